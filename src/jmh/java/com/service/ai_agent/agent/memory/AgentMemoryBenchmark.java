@@ -0,0 +1,88 @@
+package com.service.ai_agent.agent.memory;
+
+import com.service.ai_agent.agent.memory.repository.ConversationTurn;
+import com.service.ai_agent.agent.request.AgentRequest;
+import com.service.ai_agent.domain.ConversationHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phần CPU của AgentMemoryService trên mỗi request: metadata và phân loại request khi lưu,
+ * ghép chuỗi context từ các turn gần nhất khi đọc (không tính round trip DB).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgentMemoryBenchmark {
+
+    // Mặc định của agent.memory.context-window.defaults.max-messages và max-chars
+    @Param({"20"})
+    private int turns;
+
+    @Param({"8000"})
+    private int maxChars;
+
+    private AgentRequest request;
+    private List<ConversationTurn> recentTurns;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("currentPage", "/templates");
+        context.put("selectedTemplate", "tpl-restaurant-02");
+        request = AgentRequest.builder()
+                .userId("user-001")
+                .sessionId("session-0001")
+                .tenantId("tenant-a")
+                .input("Cho tôi xem các mẫu website cho nhà hàng")
+                .context(context)
+                .build();
+
+        // Mới nhất trước, giống thứ tự repository trả về
+        Instant now = Instant.now();
+        recentTurns = new ArrayList<>(turns);
+        for (int i = 0; i < turns; i++) {
+            boolean user = i % 2 == 1;
+            recentTurns.add(new ConversationTurn(
+                    user ? ConversationHistory.ConversationRole.USER : ConversationHistory.ConversationRole.ASSISTANT,
+                    user ? "Gói Premium có hỗ trợ tên miền riêng và thanh toán online không? (" + i + ")"
+                            : "Gói Premium bao gồm tên miền riêng, SSL, tích hợp thanh toán online và hỗ trợ 24/7. "
+                            + "Bạn có thể bắt đầu với mẫu Restaurant Pro rồi nâng cấp sau. (" + i + ")",
+                    now.minusSeconds(i * 30L)));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> createMetadata() {
+        return AgentMemoryService.createMetadata(request);
+    }
+
+    @Benchmark
+    public ConversationHistory.RequestType determineRequestType() {
+        return AgentMemoryService.determineRequestType(request.getInput());
+    }
+
+    @Benchmark
+    public String assembleContext() {
+        return String.join("\n", AgentMemoryService.toContextLines(recentTurns, maxChars));
+    }
+}
\ No newline at end of file
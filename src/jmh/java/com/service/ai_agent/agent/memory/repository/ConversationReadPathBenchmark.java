@@ -0,0 +1,145 @@
+package com.service.ai_agent.agent.memory.repository;
+
+import com.service.ai_agent.domain.ConversationHistory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Các đường đọc lịch sử khi dựng context, trên session có số message khác nhau:
+ * - entity: findBySessionIdAndTenantIdOrderByCreatedAtAsc (load entity, deserialize metadata JSON)
+ * - jpqlProjection: ConversationHistoryRepository.findRecentTurns (constructor expression)
+ * - jdbcProjection: RowMapper chỉ đọc role, content, created_at, không qua Hibernate. Chỉ để đối chiếu:
+ *   nhanh hơn nhưng cấp phát không ít hơn projection JPQL, nên đường nóng giữ một projection JPQL duy nhất
+ *
+ * Chạy trên H2 in-memory, một connection dùng chung; số tuyệt đối khác PostgreSQL,
+ * phần chênh lệch là chi phí phía JVM (hydrate entity, persistence context, parse JSON).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversationReadPathBenchmark {
+
+    private static final String TENANT_ID = "tenant-bench";
+    private static final String SESSION_ID = "session-bench";
+
+    private static final String SELECT_RECENT = "SELECT role, content, created_at FROM conversation_history " +
+            "WHERE tenant_id = ? AND session_id = ? ORDER BY created_at DESC LIMIT ?";
+
+    @Param({"10", "100", "1000"})
+    private int messages;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private ConversationHistoryRepository repository;
+
+    @Setup
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:read-path-" + messages + ";DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE conversation_history (" +
+                "id UUID PRIMARY KEY, tenant_id VARCHAR(100) NOT NULL, user_id VARCHAR(100) NOT NULL, " +
+                "session_id VARCHAR(100) NOT NULL, role VARCHAR(50) NOT NULL, content CLOB NOT NULL, " +
+                "request_type VARCHAR(30), message_type VARCHAR(30), metadata JSON, " +
+                "created_at TIMESTAMP WITH TIME ZONE NOT NULL, updated_at TIMESTAMP WITH TIME ZONE)");
+        jdbcTemplate.execute("CREATE INDEX idx_conversation_tenant_session " +
+                "ON conversation_history(tenant_id, session_id, created_at)");
+        insertSession();
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("com.service.ai_agent.domain");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "none"));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        entityManager = entityManagerFactory.createEntityManager();
+        repository = new JpaRepositoryFactory(entityManager).getRepository(ConversationHistoryRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<ConversationTurn> entity() {
+        List<ConversationHistory> history = repository.findBySessionIdAndTenantIdOrderByCreatedAtAsc(SESSION_ID, TENANT_ID);
+        List<ConversationTurn> turns = new ArrayList<>(history.size());
+        for (ConversationHistory message : history) {
+            turns.add(new ConversationTurn(message.getRole(), message.getContent(), message.getCreatedAt()));
+        }
+        // Mỗi request có persistence context riêng
+        entityManager.clear();
+        return turns;
+    }
+
+    @Benchmark
+    public List<ConversationTurn> jpqlProjection() {
+        List<ConversationTurn> turns = repository.findRecentTurns(SESSION_ID, TENANT_ID, PageRequest.of(0, messages));
+        entityManager.clear();
+        return turns;
+    }
+
+    @Benchmark
+    public List<ConversationTurn> jdbcProjection() {
+        return jdbcTemplate.query(SELECT_RECENT, (rs, rowNum) -> new ConversationTurn(
+                ConversationHistory.ConversationRole.valueOf(rs.getString(1)),
+                rs.getString(2),
+                rs.getObject(3, OffsetDateTime.class).toInstant()), TENANT_ID, SESSION_ID, messages);
+    }
+
+    private void insertSession() {
+        Instant start = Instant.parse("2025-01-01T00:00:00Z");
+        List<Object[]> rows = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            boolean user = i % 2 == 0;
+            String content = user
+                    ? "Tôi muốn tạo một trang web bán hàng, giá gói nâng cao là bao nhiêu? (" + i + ")"
+                    : "Gói nâng cao có giá 499.000đ/tháng, bao gồm tên miền riêng, 20 trang và hỗ trợ SEO cơ bản. (" + i + ")";
+            String metadata = "{\"has_context\":\"true\",\"context_keys\":\"business_type,budget\"}";
+            Timestamp createdAt = Timestamp.from(start.plusSeconds(i));
+            rows.add(new Object[]{UUID.randomUUID(), TENANT_ID, "user-1", SESSION_ID,
+                    user ? "USER" : "ASSISTANT", content, user ? "PRICING_INQUIRY" : null,
+                    user ? "USER_INPUT" : "AI_RESPONSE", metadata, createdAt, createdAt});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO conversation_history " +
+                "(id, tenant_id, user_id, session_id, role, content, request_type, message_type, metadata, " +
+                "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ? FORMAT JSON, ?, ?)", rows);
+    }
+}
\ No newline at end of file
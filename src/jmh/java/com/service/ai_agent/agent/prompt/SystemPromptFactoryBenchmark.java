@@ -0,0 +1,47 @@
+package com.service.ai_agent.agent.prompt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render system prompt với context của một session 20 turn (khoảng vài KB).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SystemPromptFactoryBenchmark {
+
+    private SystemPromptFactory factory;
+    private String context;
+
+    @Setup
+    public void setUp() {
+        factory = new SystemPromptFactory(new PromptRegistry());
+        StringJoiner lines = new StringJoiner("\n");
+        for (int i = 0; i < 10; i++) {
+            lines.add("[user]: Gói Premium có hỗ trợ tên miền riêng và thanh toán online không? (" + i + ")");
+            lines.add("[assistant]: Gói Premium bao gồm tên miền riêng, SSL, tích hợp thanh toán online và hỗ trợ 24/7. ("
+                    + i + ")");
+        }
+        context = lines.toString();
+    }
+
+    @Benchmark
+    public String createSystemPrompt() {
+        return factory.createSystemPrompt(context);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.service.ai_agent.agent.workflow.chain;
+
+import com.service.ai_agent.agent.tools.impl.PricingInfoTool;
+import com.service.ai_agent.agent.tools.impl.WebsiteTemplateTool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Định dạng danh sách template và gói giá thành text cho prompt tư vấn của ConsultingChainWorkflow.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsultingFormatBenchmark {
+
+    @Param({"10", "50"})
+    private int templateCount;
+
+    private List<WebsiteTemplateTool.TemplateInfo> templates;
+    private List<PricingInfoTool.PlanInfo> plans;
+
+    @Setup
+    public void setUp() {
+        templates = new ArrayList<>(templateCount);
+        for (int i = 0; i < templateCount; i++) {
+            templates.add(new WebsiteTemplateTool.TemplateInfo("tpl-" + i, "Restaurant Pro " + i,
+                    "Mẫu website cho nhà hàng, có đặt bàn online và menu theo mùa",
+                    "https://cdn.example.com/templates/tpl-" + i + ".png"));
+        }
+        plans = List.of(
+                new PricingInfoTool.PlanInfo("Basic", 99000, "VND", List.of("1 website", "Subdomain", "SSL")),
+                new PricingInfoTool.PlanInfo("Premium", 299000, "VND",
+                        List.of("5 website", "Tên miền riêng", "SSL", "Thanh toán online")),
+                new PricingInfoTool.PlanInfo("Business", 799000, "VND",
+                        List.of("Không giới hạn website", "Tên miền riêng", "Hỗ trợ 24/7", "API")));
+    }
+
+    @Benchmark
+    public String formatTemplates() {
+        return ConsultingChainWorkflow.formatTemplates(templates);
+    }
+
+    @Benchmark
+    public String formatPlans() {
+        return ConsultingChainWorkflow.formatPlans(plans);
+    }
+}
\ No newline at end of file
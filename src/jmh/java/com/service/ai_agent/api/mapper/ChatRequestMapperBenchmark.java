@@ -0,0 +1,61 @@
+package com.service.ai_agent.api.mapper;
+
+import com.service.ai_agent.agent.request.AgentRequest;
+import com.service.ai_agent.api.dto.ChatRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chuyển ChatRequest của API sang AgentRequest, chạy một lần cho mỗi request tới ChatController.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatRequestMapperBenchmark {
+
+    private ChatRequestMapper mapper;
+    private ChatRequest request;
+
+    @Setup
+    public void setUp() {
+        mapper = new ChatRequestMapper();
+        Map<String, Object> context = new HashMap<>();
+        context.put("currentPage", "/templates");
+        context.put("selectedTemplate", "tpl-restaurant-02");
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("client", "web");
+        request = ChatRequest.builder()
+                .input("Tôi muốn tạo website cho nhà hàng, gói nào phù hợp?")
+                .userId("user-001")
+                .sessionId("session-0001")
+                .tenantId("tenant-a")
+                .context(context)
+                .metadata(metadata)
+                .build();
+    }
+
+    @Benchmark
+    public AgentRequest toAgentRequestWithDefaults() {
+        return mapper.toAgentRequestWithDefaults(request);
+    }
+
+    @Benchmark
+    public AgentRequest toAgentRequestWithEnrichment() {
+        return mapper.toAgentRequestWithEnrichment(request, "web");
+    }
+}
\ No newline at end of file
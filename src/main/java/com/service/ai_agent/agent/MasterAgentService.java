@@ -1,6 +1,7 @@
 package com.service.ai_agent.agent;
 
 
+import com.service.ai_agent.agent.metrics.AgentMetrics;
 import com.service.ai_agent.agent.request.AgentRequest;
 import com.service.ai_agent.agent.response.AgentResponse;
 import com.service.ai_agent.agent.workflow.chain.ChainWorkflow;
@@ -9,6 +10,7 @@ import com.service.ai_agent.agent.workflow.route.IntentBasedRoutingWorkflow;
 import com.service.ai_agent.agent.workflow.route.RoutingWorkflow;
 import com.service.ai_agent.api.dto.ChatRequest;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
@@ -16,11 +18,13 @@ import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class MasterAgentService {
 
     private final RoutingWorkflow router;
     private final @Qualifier("consultingChainWorkflow") ChainWorkflow consultingWorkflow;
     private final @Qualifier("defaultOrchestrationWorkflow") OrchestrationWorkflow orchestrationWorkflow;
+    private final AgentMetrics metrics;
 
     public String processRequest(ChatRequest chatRequest) {
         AgentRequest agentRequest = AgentRequest.builder()
@@ -32,22 +36,33 @@ public class MasterAgentService {
                 .context(chatRequest.getContext())
                 .build();
 
-        String route = router.determineRoute(agentRequest);
-        System.out.println("Determined Route: " + route);
+        long start = System.nanoTime();
+        String route = null;
+        boolean success = false;
+        try {
+            route = metrics.recordStage("routing", agentRequest.getTenantId(),
+                    () -> router.determineRoute(agentRequest));
+            log.debug("Determined route: {}", route);
 
-        AgentResponse response;
+            AgentResponse response;
 
-        switch (route) {
-            case IntentBasedRoutingWorkflow.ROUTE_CONSULTING_WORKFLOW:
-                response = consultingWorkflow.execute(agentRequest);
-                break;
+            switch (route) {
+                case IntentBasedRoutingWorkflow.ROUTE_CONSULTING_WORKFLOW:
+                    response = consultingWorkflow.execute(agentRequest);
+                    break;
 
-            case IntentBasedRoutingWorkflow.ROUTE_ORCHESTRATION_WORKFLOW:
-            default:
-                response = orchestrationWorkflow.process(agentRequest);
-                break;
-        }
+                case IntentBasedRoutingWorkflow.ROUTE_ORCHESTRATION_WORKFLOW:
+                default:
+                    route = IntentBasedRoutingWorkflow.ROUTE_ORCHESTRATION_WORKFLOW;
+                    response = orchestrationWorkflow.process(agentRequest);
+                    break;
+            }
 
-        return response.getOutput();
+            success = true;
+            return response.getOutput();
+        } finally {
+            // Route luôn là một trong các hằng số của router nên tag có số giá trị cố định
+            metrics.recordRequest(route, agentRequest.getTenantId(), System.nanoTime() - start, success);
+        }
     }
 }
\ No newline at end of file
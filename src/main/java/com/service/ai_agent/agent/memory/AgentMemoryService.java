@@ -1,23 +1,30 @@
 package com.service.ai_agent.agent.memory;
 
 import com.service.ai_agent.agent.memory.repository.ConversationHistoryRepository;
+import com.service.ai_agent.agent.memory.repository.ConversationTurn;
+import com.service.ai_agent.agent.metrics.AgentMetrics;
 import com.service.ai_agent.agent.request.AgentRequest;
 import com.service.ai_agent.domain.ConversationHistory;
+import com.service.ai_agent.domain.ConversationSummary;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,13 +34,35 @@ public class AgentMemoryService {
     // Make VectorStore optional to work without database
     private final Optional<VectorStore> vectorStore;
     private final Optional<ConversationHistoryRepository> historyRepository;
+    private final ConversationWriteBehindBuffer writeBehindBuffer;
+    private final ContextWindowProperties contextWindowProperties;
+    private final SessionContextCache sessionContextCache;
+    private final SessionSummaryMemory sessionSummaryMemory;
+    private final HybridContextRetriever hybridContextRetriever;
+    private final BatchingVectorStoreWriter vectorStoreWriter;
+    private final ConversationRetentionJob retentionJob;
+    private final AgentMetrics metrics;
 
     @Transactional
     public void saveInteraction(AgentRequest request, String aiResponse) {
+        // Entry của session cache load xong sau thời điểm này có thể đã chứa turn đang được ghi
+        long writeStartedNanos = System.nanoTime();
         try {
+            // Write-behind: đưa vào hàng đợi, thread nền sẽ ghi theo lô, response không phải chờ DB/embedding
+            if (writeBehindBuffer.isEnabled()) {
+                writeBehindBuffer.enqueue(new ConversationWriteBehindBuffer.PendingInteraction(
+                        buildHistoryEntries(request, aiResponse),
+                        vectorStore.isPresent() ? buildVectorDocuments(request, aiResponse) : List.of(),
+                        () -> onInteractionPersisted(request, aiResponse, writeStartedNanos)));
+                log.debug("Queued interaction for user {} in session {} (tenant: {})",
+                        request.getUserId(), request.getSessionId(), request.getTenantId());
+                return;
+            }
+
             // Only save to database if repository is available
             if (historyRepository.isPresent()) {
                 saveToDatabase(request, aiResponse);
+                afterCommit(() -> onInteractionPersisted(request, aiResponse, writeStartedNanos));
             } else {
                 log.warn("Database repository not available, skipping conversation save for session: {}",
                         request.getSessionId());
@@ -59,31 +88,42 @@ public class AgentMemoryService {
 
     @Transactional(readOnly = true)
     public String retrieveContext(String sessionId, String tenantId) {
+        return retrieveContext(sessionId, tenantId, null);
+    }
+
+    /**
+     * Context của session cho input hiện tại: các turn gần nhất lấy từ DB (không embedding), cộng với
+     * các turn cũ hơn liên quan tới query nếu có vector store (một lời gọi embedding trên chính query).
+     * @param query Input hiện tại của người dùng; null/rỗng thì chỉ lấy các turn gần nhất.
+     */
+    @Transactional(readOnly = true)
+    public String retrieveContext(String sessionId, String tenantId, String query) {
+        return metrics.recordStage("memory_retrieval", tenantId,
+                () -> retrieveContextUntimed(sessionId, tenantId, query));
+    }
+
+    private String retrieveContextUntimed(String sessionId, String tenantId, String query) {
         try {
-            // Try vector store first if available
-            if (vectorStore.isPresent()) {
-                SearchRequest searchRequest = SearchRequest.builder()
-                        .query("")
-                        .filterExpression(String.format("sessionId == '%s' && tenantId == '%s'", sessionId, tenantId))
-                        .topK(10)
-                        .build();
-
-                List<Document> results = vectorStore.get().similaritySearch(searchRequest);
-                return results.stream()
-                        .map(doc -> String.format("[%s]: %s",
-                                doc.getMetadata().get("role"),
-                                doc.getText()))
-                        .collect(Collectors.joining("\n"));
+            String recentContext;
+            // Chế độ summary: summary của session + các message chưa được tóm tắt, chi phí không đổi theo độ dài session.
+            // Không qua session cache vì summary được cập nhật ở nền.
+            if (sessionSummaryMemory.isEnabled()) {
+                recentContext = String.join("\n", loadSummaryContextLines(sessionId, tenantId));
+            } else if (sessionContextCache.isEnabled()) {
+                // Session đang "nóng" thì lấy từ cache, không cần round trip xuống storage
+                recentContext = sessionContextCache.get(tenantId, sessionId, contextWindowProperties.forTenant(tenantId),
+                        () -> loadContextLines(sessionId, tenantId));
+            } else {
+                recentContext = String.join("\n", loadContextLines(sessionId, tenantId));
             }
 
-            // Fallback to database if available
-            if (historyRepository.isPresent()) {
-                return retrieveContextFromDatabase(sessionId, tenantId);
+            // Các turn cũ liên quan đứng trước, theo thứ tự thời gian, phần gần nhất ở cuối
+            List<String> relevant = hybridContextRetriever.findRelevant(sessionId, tenantId, query, recentContext);
+            if (relevant.isEmpty()) {
+                return recentContext;
             }
-
-            // If neither available, return empty context
-            log.warn("No storage available for context retrieval, returning empty context for session: {}", sessionId);
-            return "";
+            String relevantContext = String.join("\n", relevant);
+            return recentContext.isEmpty() ? relevantContext : relevantContext + "\n" + recentContext;
 
         } catch (Exception e) {
             log.warn("Failed to retrieve context for session {}: {}", sessionId, e.getMessage());
@@ -91,6 +131,20 @@ public class AgentMemoryService {
         }
     }
 
+    /**
+     * Các turn gần nhất của session. Luôn lấy từ DB theo thứ tự thời gian; vector store chỉ dùng
+     * cho phần liên quan (HybridContextRetriever), vì search với query rỗng không cho ra thứ tự thời gian.
+     */
+    private List<String> loadContextLines(String sessionId, String tenantId) {
+        if (historyRepository.isPresent()) {
+            return retrieveContextFromDatabase(sessionId, tenantId, null);
+        }
+
+        // Không có DB thì chỉ còn phần liên quan từ vector store (nếu có)
+        log.warn("Database repository not available, no recent turns for session: {}", sessionId);
+        return List.of();
+    }
+
     @Transactional(readOnly = true)
     public List<ConversationHistory> getSessionHistory(String sessionId, String tenantId) {
         if (historyRepository.isPresent()) {
@@ -108,12 +162,24 @@ public class AgentMemoryService {
         return 0;
     }
 
-    @Transactional
+    /**
+     * Xóa conversation của tenant cũ hơn cutoffTime. Có JdbcTemplate thì xóa theo chunk có nghỉ giữa các chunk
+     * (mỗi chunk một transaction), tránh một câu DELETE lớn gây vacuum storm và phình index.
+     */
     public void cleanupOldConversations(String tenantId, Instant cutoffTime) {
+        if (retentionJob.isAvailable()) {
+            try {
+                long deleted = retentionJob.purgeTenant(tenantId, cutoffTime);
+                log.info("Cleaned up {} old conversations for tenant {} before {}", deleted, tenantId, cutoffTime);
+            } catch (Exception e) {
+                log.error("Failed to cleanup old conversations for tenant {}: {}", tenantId, e.getMessage(), e);
+            }
+            return;
+        }
         if (historyRepository.isPresent()) {
             try {
-                historyRepository.get().deleteOldConversations(tenantId, cutoffTime);
-                log.info("Cleaned up old conversations for tenant {} before {}", tenantId, cutoffTime);
+                int deleted = historyRepository.get().deleteOldConversations(tenantId, cutoffTime);
+                log.info("Cleaned up {} old conversations for tenant {} before {}", deleted, tenantId, cutoffTime);
             } catch (Exception e) {
                 log.error("Failed to cleanup old conversations for tenant {}: {}", tenantId, e.getMessage(), e);
             }
@@ -121,107 +187,169 @@ public class AgentMemoryService {
     }
 
     // Private helper methods
+
+    /**
+     * Chỉ chạy khi turn đã nằm trong DB: cache của session không giữ turn chưa được lưu,
+     * và lần gộp summary đọc được các dòng vừa ghi.
+     */
+    private void onInteractionPersisted(AgentRequest request, String aiResponse, long writeStartedNanos) {
+        // Cập nhật context đã cache của session thay vì invalidate
+        sessionContextCache.append(request.getTenantId(), request.getSessionId(), writeStartedNanos, List.of(
+                formatTurn(ConversationHistory.ConversationRole.USER, request.getInput()),
+                formatTurn(ConversationHistory.ConversationRole.ASSISTANT, aiResponse)));
+        // Chế độ summary: gộp các turn cũ vào summary ở nền khi vượt ngưỡng
+        sessionSummaryMemory.onInteractionSaved(request.getTenantId(), request.getSessionId());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     private void saveToDatabase(AgentRequest request, String aiResponse) {
-        // Tạo metadata cho user message
-        Map<String, String> userMetadata = createMetadata(request, "user_input");
-        userMetadata.put("input_length", String.valueOf(request.getInput().length()));
-        userMetadata.put("request_type", determineRequestType(request.getInput()));
+        // Lưu user message và AI response vào DB quan hệ
+        historyRepository.get().saveAll(buildHistoryEntries(request, aiResponse));
+    }
 
-        // Lưu user message vào DB quan hệ
+    private List<ConversationHistory> buildHistoryEntries(AgentRequest request, String aiResponse) {
+        // tenant/user/session, thời điểm tạo và độ dài nội dung đã có ở cột riêng, metadata chỉ giữ phần tự do
+        // Câu trả lời lưu sau câu hỏi 1µs (độ phân giải timestamp của PostgreSQL), để mọi truy vấn sắp theo
+        // created_at (tail window, history keyset, mốc summary) luôn giữ đúng thứ tự và không tách đôi một turn
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
         ConversationHistory userEntry = ConversationHistory.builder()
                 .tenantId(request.getTenantId())
                 .userId(request.getUserId())
                 .sessionId(request.getSessionId())
                 .role(ConversationHistory.ConversationRole.USER)
                 .content(request.getInput())
-                .metadata(userMetadata)
-                .createdAt(Instant.now())
+                .messageType(ConversationHistory.MessageType.USER_INPUT)
+                .requestType(determineRequestType(request.getInput()))
+                .metadata(createMetadata(request))
+                .createdAt(now)
                 .build();
-        historyRepository.get().save(userEntry);
 
-        // Tạo metadata cho AI response
-        Map<String, String> aiMetadata = createMetadata(request, "ai_response");
-        aiMetadata.put("response_length", String.valueOf(aiResponse.length()));
-        aiMetadata.put("processing_timestamp", Instant.now().toString());
-
-        // Lưu AI response vào DB quan hệ
         ConversationHistory aiEntry = ConversationHistory.builder()
                 .tenantId(request.getTenantId())
                 .userId(request.getUserId())
                 .sessionId(request.getSessionId())
                 .role(ConversationHistory.ConversationRole.ASSISTANT)
                 .content(aiResponse)
-                .metadata(aiMetadata)
-                .createdAt(Instant.now())
+                .messageType(ConversationHistory.MessageType.AI_RESPONSE)
+                .metadata(createMetadata(request))
+                .createdAt(now.plusNanos(1_000))
                 .build();
-        historyRepository.get().save(aiEntry);
-    }
 
-    private Map<String, String> createMetadata(AgentRequest request, String messageType) {
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("message_type", messageType);
-        metadata.put("tenant_id", request.getTenantId());
-        metadata.put("user_id", request.getUserId());
-        metadata.put("session_id", request.getSessionId());
-        metadata.put("timestamp", Instant.now().toString());
+        return List.of(userEntry, aiEntry);
+    }
 
+    static Map<String, String> createMetadata(AgentRequest request) {
         // Thêm context nếu có
-        if (request.getContext() != null && !request.getContext().isEmpty()) {
-            metadata.put("has_context", "true");
-            metadata.put("context_keys", String.join(",", request.getContext().keySet()));
+        if (request.getContext() == null || request.getContext().isEmpty()) {
+            return new HashMap<>();
         }
-
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("has_context", "true");
+        metadata.put("context_keys", String.join(",", request.getContext().keySet()));
         return metadata;
     }
 
-    private String determineRequestType(String input) {
+    public static ConversationHistory.RequestType determineRequestType(String input) {
         String lowerInput = input.toLowerCase();
         if (lowerInput.contains("tạo") || lowerInput.contains("create")) {
-            return "creation_request";
+            return ConversationHistory.RequestType.CREATION_REQUEST;
         } else if (lowerInput.contains("giá") || lowerInput.contains("price")) {
-            return "pricing_inquiry";
+            return ConversationHistory.RequestType.PRICING_INQUIRY;
         } else if (lowerInput.contains("template") || lowerInput.contains("mẫu")) {
-            return "template_inquiry";
+            return ConversationHistory.RequestType.TEMPLATE_INQUIRY;
         }
-        return "general_inquiry";
+        return ConversationHistory.RequestType.GENERAL_INQUIRY;
     }
 
     private void saveToVectorStore(AgentRequest request, String aiResponse) {
-        try {
-            Map<String, Object> userDocMetadata = Map.of(
-                    "role", "USER",
-                    "sessionId", request.getSessionId(),
-                    "tenantId", request.getTenantId(),
-                    "userId", request.getUserId(),
-                    "timestamp", Instant.now().toString()
-            );
-
-            Map<String, Object> aiDocMetadata = Map.of(
-                    "role", "ASSISTANT",
-                    "sessionId", request.getSessionId(),
-                    "tenantId", request.getTenantId(),
-                    "userId", request.getUserId(),
-                    "timestamp", Instant.now().toString()
-            );
-
-            List<Document> documents = List.of(
-                    new Document(request.getInput(), userDocMetadata),
-                    new Document(aiResponse, aiDocMetadata)
-            );
-
-            vectorStore.get().add(documents);
-        } catch (Exception e) {
-            log.warn("Failed to save to vector store: {}", e.getMessage());
-        }
+        // Gom chung lô với các session khác: một request embedding cho nhiều turn
+        vectorStoreWriter.submit(buildVectorDocuments(request, aiResponse));
+    }
+
+    private List<Document> buildVectorDocuments(AgentRequest request, String aiResponse) {
+        Map<String, Object> userDocMetadata = Map.of(
+                "role", "USER",
+                "sessionId", request.getSessionId(),
+                "tenantId", request.getTenantId(),
+                "userId", request.getUserId(),
+                "timestamp", Instant.now().toString()
+        );
+
+        Map<String, Object> aiDocMetadata = Map.of(
+                "role", "ASSISTANT",
+                "sessionId", request.getSessionId(),
+                "tenantId", request.getTenantId(),
+                "userId", request.getUserId(),
+                "timestamp", Instant.now().toString()
+        );
+
+        return List.of(
+                new Document(request.getInput(), userDocMetadata),
+                new Document(aiResponse, aiDocMetadata)
+        );
+    }
+
+    private List<String> loadSummaryContextLines(String sessionId, String tenantId) {
+        Optional<ConversationSummary> summary = sessionSummaryMemory.findSummary(tenantId, sessionId);
+        List<String> lines = new ArrayList<>();
+        summary.ifPresent(s -> lines.add(formatSummary(s.getSummary())));
+        lines.addAll(retrieveContextFromDatabase(sessionId, tenantId,
+                summary.map(ConversationSummary::getSummarizedUntil).orElse(null)));
+        return lines;
+    }
+
+    /**
+     * @param after Chỉ lấy các message mới hơn mốc này (null: không giới hạn).
+     */
+    private List<String> retrieveContextFromDatabase(String sessionId, String tenantId, Instant after) {
+        ContextWindowProperties.Window window = contextWindowProperties.forTenant(tenantId);
+
+        // Chỉ lấy tail window (mới nhất trước), không load toàn bộ session
+        PageRequest tail = PageRequest.of(0, window.getMaxMessages());
+        List<ConversationTurn> recentTurns = after == null
+                ? historyRepository.get().findRecentTurns(sessionId, tenantId, tail)
+                : historyRepository.get().findRecentTurnsAfter(sessionId, tenantId, after, tail);
+
+        return toContextLines(recentTurns, window.getMaxChars());
     }
 
-    private String retrieveContextFromDatabase(String sessionId, String tenantId) {
-        List<ConversationHistory> history = historyRepository.get()
-                .findBySessionIdAndTenantIdOrderByCreatedAtAsc(sessionId, tenantId);
+    /**
+     * Giữ các message mới nhất trong giới hạn ký tự, rồi đảo lại theo thứ tự thời gian.
+     * @param recentTurns Các turn, mới nhất trước.
+     */
+    static List<String> toContextLines(List<ConversationTurn> recentTurns, int maxChars) {
+        List<String> lines = new ArrayList<>(recentTurns.size());
+        int totalChars = 0;
+        for (ConversationTurn turn : recentTurns) {
+            String line = formatTurn(turn.role(), turn.content());
+            if (!lines.isEmpty() && totalChars + line.length() + 1 > maxChars) {
+                break;
+            }
+            lines.add(line);
+            totalChars += line.length() + 1;
+        }
+        Collections.reverse(lines);
 
-        return history.stream()
-                .map(conv -> String.format("[%s]: %s", conv.getRole().getValue(), conv.getContent()))
-                .collect(Collectors.joining("\n"));
+        return lines;
     }
-}
 
+    private String formatSummary(String summary) {
+        return "[summary of earlier conversation]: " + summary;
+    }
+
+    private static String formatTurn(ConversationHistory.ConversationRole role, String content) {
+        return String.format("[%s]: %s", role.getValue(), content);
+    }
+}
\ No newline at end of file
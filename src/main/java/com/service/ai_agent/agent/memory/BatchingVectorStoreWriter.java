@@ -0,0 +1,264 @@
+package com.service.ai_agent.agent.memory;
+
+import com.service.ai_agent.agent.prompt.TokenCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gom document của nhiều session thành một lần VectorStore.add: một request embedding và một lần insert
+ * vào pgvector cho cả lô, thay vì một request embedding cho mỗi turn.
+ *
+ * Lô được flush khi đủ max-batch-documents, đủ max-batch-tokens, hoặc sau max-linger tính từ document đầu tiên.
+ * Khi cả lô lỗi, lô được chia đôi và thử lại để tìm đúng document gây lỗi; lỗi được ghi nhận theo từng document.
+ */
+@Component
+@Slf4j
+public class BatchingVectorStoreWriter implements SmartLifecycle {
+
+    private static final int RECENT_FAILURES = 50;
+
+    private final Optional<VectorStore> vectorStore;
+    private final TokenCounter tokenCounter;
+
+    private final boolean enabled;
+    private final int maxBatchDocuments;
+    private final int maxBatchTokens;
+    private final long maxLingerMs;
+    private final BlockingQueue<Document> queue;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder addCalls = new LongAdder();
+    private final Deque<DocumentFailure> recentFailures = new ArrayDeque<>();
+
+    /**
+     * @param addCalls Số lần gọi VectorStore.add (mỗi lần là một request embedding và một lần insert), gồm cả các lần thử lại.
+     */
+    public record Stats(boolean running, int queueSize, long submitted, long written, long failed, long batches,
+                        double meanBatchDocuments, long addCalls, List<DocumentFailure> recentFailures) {}
+
+    public record DocumentFailure(String documentId, Object tenantId, Object sessionId, String error, Instant failedAt) {}
+
+    public BatchingVectorStoreWriter(Optional<VectorStore> vectorStore,
+                                     TokenCounter tokenCounter,
+                                     @Value("${agent.memory.vector-batch.enabled:true}") boolean enabled,
+                                     @Value("${agent.memory.vector-batch.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${agent.memory.vector-batch.max-batch-documents:256}") int maxBatchDocuments,
+                                     @Value("${agent.memory.vector-batch.max-batch-tokens:100000}") int maxBatchTokens,
+                                     @Value("${agent.memory.vector-batch.max-linger-ms:200}") long maxLingerMs) {
+        this.vectorStore = vectorStore;
+        this.tokenCounter = tokenCounter;
+        this.enabled = enabled && vectorStore.isPresent();
+        this.maxBatchDocuments = maxBatchDocuments;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxLingerMs = maxLingerMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Đưa document vào lô tiếp theo. Nếu writer không chạy hoặc hàng đợi đầy thì ghi ngay trên thread hiện tại.
+     */
+    public void submit(List<Document> documents) {
+        if (vectorStore.isEmpty() || documents.isEmpty()) {
+            return;
+        }
+        submitted.add(documents.size());
+        List<Document> rejected = new ArrayList<>();
+        for (Document document : documents) {
+            if (!running || !queue.offer(document)) {
+                rejected.add(document);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            log.debug("Vector batch queue unavailable (running: {}, size: {}), writing {} documents synchronously",
+                    running, queue.size(), rejected.size());
+            write(rejected);
+        }
+    }
+
+    public Stats getStats() {
+        long batchCount = batches.sum();
+        List<DocumentFailure> failures;
+        synchronized (recentFailures) {
+            failures = List.copyOf(recentFailures);
+        }
+        return new Stats(running, queue.size(), submitted.sum(), written.sum(), failed.sum(), batchCount,
+                batchCount > 0 ? (double) (written.sum() + failed.sum()) / batchCount : 0, addCalls.sum(), failures);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriteLoop, "vector-batch-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Vector store batch writer started (max documents: {}, max tokens: {}, linger: {} ms)",
+                maxBatchDocuments, maxBatchTokens, maxLingerMs);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Document> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.warn("Writing {} pending vector documents on shutdown", remaining.size());
+            write(remaining);
+        }
+        log.info("Vector store batch writer stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Dừng sau ConversationWriteBehindBuffer (phase cao hơn dừng trước), để document mà buffer drain lúc shutdown vẫn được gom lô.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+
+    private void runWriteLoop() {
+        List<Document> batch = new ArrayList<>(maxBatchDocuments);
+        while (running || !queue.isEmpty()) {
+            try {
+                Document first = queue.poll(maxLingerMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                int tokens = tokenCounter.count(first.getText());
+
+                // Gom thêm cho đến khi đủ số document/token hoặc hết thời gian linger tính từ document đầu tiên
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+                while (batch.size() < maxBatchDocuments && tokens < maxBatchTokens && running) {
+                    long remaining = deadline - System.nanoTime();
+                    Document next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    int nextTokens = tokenCounter.count(next.getText());
+                    if (tokens + nextTokens > maxBatchTokens) {
+                        // Document này mở đầu lô sau
+                        write(batch);
+                        batch.clear();
+                        tokens = 0;
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+                    }
+                    batch.add(next);
+                    tokens += nextTokens;
+                }
+
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Unexpected error in vector batch writer loop: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Document> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.increment();
+        List<Document> documents = List.copyOf(batch);
+        Exception error = tryAdd(documents);
+        if (error != null) {
+            isolateFailures(documents, error);
+        }
+        log.debug("Wrote batch of {} documents to vector store", documents.size());
+    }
+
+    /**
+     * Lô đã lỗi: chia đôi và thử lại từng nửa để tìm đúng document gây lỗi.
+     * Cả hai nửa cùng lỗi thì nhiều khả năng là lỗi chung (rate limit, DB), không chia tiếp để tránh nhân số request.
+     */
+    private void isolateFailures(List<Document> documents, Exception error) {
+        if (documents.size() == 1) {
+            recordFailure(documents.get(0), error);
+            return;
+        }
+        int middle = documents.size() / 2;
+        List<Document> left = documents.subList(0, middle);
+        List<Document> right = documents.subList(middle, documents.size());
+        Exception leftError = tryAdd(left);
+        Exception rightError = tryAdd(right);
+        if (leftError != null && rightError != null) {
+            documents.forEach(document -> recordFailure(document, leftError));
+            return;
+        }
+        if (leftError != null) {
+            isolateFailures(left, leftError);
+        }
+        if (rightError != null) {
+            isolateFailures(right, rightError);
+        }
+    }
+
+    /**
+     * @return null nếu ghi thành công, ngược lại là lỗi.
+     */
+    private Exception tryAdd(List<Document> documents) {
+        try {
+            addCalls.increment();
+            vectorStore.get().add(documents);
+            written.add(documents.size());
+            return null;
+        } catch (Exception e) {
+            log.debug("Vector batch of {} documents failed: {}", documents.size(), e.getMessage());
+            return e;
+        }
+    }
+
+    private void recordFailure(Document document, Exception e) {
+        failed.increment();
+        log.warn("Failed to write document {} (session {}) to vector store: {}",
+                document.getId(), document.getMetadata().get("sessionId"), e.getMessage());
+        synchronized (recentFailures) {
+            recentFailures.addFirst(new DocumentFailure(document.getId(), document.getMetadata().get("tenantId"),
+                    document.getMetadata().get("sessionId"), e.getMessage(), Instant.now()));
+            while (recentFailures.size() > RECENT_FAILURES) {
+                recentFailures.removeLast();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.service.ai_agent.agent.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình cửa sổ context (tail window) khi dựng context từ conversation history.
+ * Giá trị mặc định áp dụng cho mọi tenant, có thể override theo từng tenant:
+ * agent.memory.context-window.tenants.[tenantId].max-messages=...
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.memory.context-window")
+public class ContextWindowProperties {
+
+    private Window defaults = new Window(20, 8000);
+
+    private Map<String, Window> tenants = new HashMap<>();
+
+    /**
+     * Lấy cửa sổ context cho tenant; các giá trị không được override (<= 0) lấy từ mặc định.
+     */
+    public Window forTenant(String tenantId) {
+        Window override = tenantId != null ? tenants.get(tenantId) : null;
+        if (override == null) {
+            return defaults;
+        }
+        return new Window(
+                override.getMaxMessages() > 0 ? override.getMaxMessages() : defaults.getMaxMessages(),
+                override.getMaxChars() > 0 ? override.getMaxChars() : defaults.getMaxChars());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Window {
+        // Số message gần nhất tối đa được đưa vào context
+        private int maxMessages;
+        // Tổng số ký tự tối đa của phần context từ history
+        private int maxChars;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,251 @@
+package com.service.ai_agent.agent.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Retention cho conversation_history đã được partition theo tháng (migration V3).
+ *
+ * Mỗi lần chạy:
+ * 1. Tạo trước các partition của những tháng sắp tới, để row mới không rơi vào partition default.
+ * 2. Detach (và drop, nếu mode=drop) các partition đã hết hạn với mọi tenant: cả tháng được bỏ đi trong một lệnh,
+ *    không có DELETE từng dòng nên không sinh dead tuple và không làm phình index.
+ * 3. Tenant có retention ngắn hơn thời gian giữ partition (conversation_retention_policy) được xóa theo từng
+ *    chunk nhỏ, nghỉ giữa các chunk để không chiếm I/O và để autovacuum theo kịp.
+ */
+@Component
+@Slf4j
+public class ConversationRetentionJob {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("conversation_history_y(\\d{4})m(\\d{2})");
+
+    private static final String PURGE_CHUNK = "DELETE FROM conversation_history WHERE (id, created_at) IN " +
+            "(SELECT id, created_at FROM conversation_history WHERE created_at < ? AND %s LIMIT ?)";
+
+    private final Optional<JdbcTemplate> jdbcTemplate;
+    private final boolean enabled;
+    private final Duration defaultRetention;
+    private final boolean dropDetached;
+    private final int premakeMonths;
+    private final int tenantHashBuckets;
+    private final int chunkSize;
+    private final Duration chunkPause;
+    private final int maxChunksPerRun;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder partitionsCreated = new LongAdder();
+    private final LongAdder partitionsRemoved = new LongAdder();
+    private final LongAdder rowsPurged = new LongAdder();
+    private final AtomicReference<Instant> lastRunAt = new AtomicReference<>();
+    private volatile long lastRunMillis;
+
+    public record Stats(boolean enabled, long runs, long failures, Instant lastRunAt, long lastRunMillis,
+                        long partitionsCreated, long partitionsRemoved, long rowsPurged) {}
+
+    public ConversationRetentionJob(Optional<JdbcTemplate> jdbcTemplate,
+                                    @Value("${agent.memory.retention.enabled:false}") boolean enabled,
+                                    @Value("${agent.memory.retention.default-retention:P90D}") Duration defaultRetention,
+                                    @Value("${agent.memory.retention.partition-mode:drop}") String partitionMode,
+                                    @Value("${agent.memory.retention.premake-months:2}") int premakeMonths,
+                                    @Value("${agent.memory.retention.tenant-hash-buckets:0}") int tenantHashBuckets,
+                                    @Value("${agent.memory.retention.purge.chunk-size:5000}") int chunkSize,
+                                    @Value("${agent.memory.retention.purge.chunk-pause:PT0.2S}") Duration chunkPause,
+                                    @Value("${agent.memory.retention.purge.max-chunks-per-run:1000}") int maxChunksPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled && jdbcTemplate.isPresent();
+        this.defaultRetention = defaultRetention;
+        this.dropDetached = !"detach".equalsIgnoreCase(partitionMode);
+        this.premakeMonths = premakeMonths;
+        this.tenantHashBuckets = tenantHashBuckets;
+        this.chunkSize = chunkSize;
+        this.chunkPause = chunkPause;
+        this.maxChunksPerRun = maxChunksPerRun;
+    }
+
+    @Scheduled(cron = "${agent.memory.retention.cron:0 30 3 * * *}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        runs.increment();
+        lastRunAt.set(Instant.now());
+        try {
+            JdbcTemplate jdbc = jdbcTemplate.get();
+            Map<String, Integer> policies = loadPolicies(jdbc);
+            // Partition chỉ được bỏ khi đã hết hạn với cả tenant có retention dài nhất
+            Duration partitionRetention = policies.values().stream()
+                    .map(Duration::ofDays)
+                    .reduce(defaultRetention, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+
+            if (isPartitioned(jdbc)) {
+                createUpcomingPartitions(jdbc);
+                removeExpiredPartitions(jdbc, Instant.now().minus(partitionRetention));
+            }
+            purgeShorterRetentions(jdbc, policies, partitionRetention);
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Conversation retention run failed: {}", e.getMessage(), e);
+        } finally {
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    /**
+     * Xóa các message của tenant cũ hơn cutoff theo từng chunk.
+     * @return Số dòng đã xóa.
+     */
+    public long purgeTenant(String tenantId, Instant cutoff) {
+        if (jdbcTemplate.isEmpty()) {
+            return 0;
+        }
+        return purge(jdbcTemplate.get(), "tenant_id = ?", cutoff, tenantId);
+    }
+
+    public boolean isAvailable() {
+        return jdbcTemplate.isPresent();
+    }
+
+    public Stats getStats() {
+        return new Stats(enabled, runs.sum(), failures.sum(), lastRunAt.get(), lastRunMillis,
+                partitionsCreated.sum(), partitionsRemoved.sum(), rowsPurged.sum());
+    }
+
+    private Map<String, Integer> loadPolicies(JdbcTemplate jdbc) {
+        try {
+            return jdbc.query("SELECT tenant_id, retention_days FROM conversation_retention_policy",
+                    rs -> {
+                        Map<String, Integer> policies = new HashMap<>();
+                        while (rs.next()) {
+                            policies.put(rs.getString(1), rs.getInt(2));
+                        }
+                        return policies;
+                    });
+        } catch (Exception e) {
+            // Chưa chạy migration V3: chỉ có retention mặc định
+            log.debug("No conversation_retention_policy table: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private boolean isPartitioned(JdbcTemplate jdbc) {
+        List<String> kind = jdbc.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('conversation_history')", String.class);
+        return kind.contains("p");
+    }
+
+    private void createUpcomingPartitions(JdbcTemplate jdbc) {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= premakeMonths; i++) {
+            LocalDate month = current.plusMonths(i).atDay(1);
+            String name = partitionName(current.plusMonths(i));
+            boolean existed = jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+            if (existed) {
+                continue;
+            }
+            try {
+                jdbc.queryForObject("SELECT create_conversation_history_partition(?, ?)", String.class,
+                        month, tenantHashBuckets);
+                partitionsCreated.increment();
+                log.info("Created conversation_history partition {}", name);
+            } catch (Exception e) {
+                // Thường do partition default đã có row của tháng này
+                failures.increment();
+                log.warn("Failed to create conversation_history partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void removeExpiredPartitions(JdbcTemplate jdbc, Instant cutoff) {
+        List<String> partitions = jdbc.queryForList(
+                "SELECT c.relname::text FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass('conversation_history') ORDER BY c.relname", String.class);
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            Instant upperBound = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            if (upperBound.isAfter(cutoff)) {
+                continue;
+            }
+            // Tên partition đã được kiểm tra bằng PARTITION_NAME nên có thể ghép vào câu lệnh
+            jdbc.execute("ALTER TABLE conversation_history DETACH PARTITION " + partition);
+            if (dropDetached) {
+                jdbc.execute("DROP TABLE " + partition);
+            }
+            partitionsRemoved.increment();
+            log.info("{} expired conversation_history partition {}", dropDetached ? "Dropped" : "Detached", partition);
+        }
+    }
+
+    /**
+     * Tenant có retention ngắn hơn thời gian giữ partition: xóa theo chunk.
+     * Tenant dùng retention mặc định cũng cần xóa theo chunk khi có tenant khác giữ partition lâu hơn.
+     */
+    private void purgeShorterRetentions(JdbcTemplate jdbc, Map<String, Integer> policies, Duration partitionRetention) {
+        Instant now = Instant.now();
+        if (defaultRetention.compareTo(partitionRetention) < 0) {
+            String condition = "tenant_id NOT IN (SELECT tenant_id FROM conversation_retention_policy)";
+            purge(jdbc, condition, now.minus(defaultRetention));
+        }
+        policies.forEach((tenantId, days) -> {
+            Duration retention = Duration.ofDays(days);
+            if (retention.compareTo(partitionRetention) < 0) {
+                purge(jdbc, "tenant_id = ?", now.minus(retention), tenantId);
+            }
+        });
+    }
+
+    private long purge(JdbcTemplate jdbc, String condition, Instant cutoff, Object... conditionArgs) {
+        String sql = String.format(PURGE_CHUNK, condition);
+        Object[] args = new Object[conditionArgs.length + 2];
+        args[0] = Timestamp.from(cutoff);
+        System.arraycopy(conditionArgs, 0, args, 1, conditionArgs.length);
+        args[args.length - 1] = chunkSize;
+
+        long total = 0;
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            int deleted = jdbc.update(sql, args);
+            total += deleted;
+            rowsPurged.add(deleted);
+            if (deleted < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(chunkPause.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Purged {} conversation rows older than {} ({})", total, cutoff, condition);
+        }
+        return total;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("conversation_history_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,307 @@
+package com.service.ai_agent.agent.memory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.ai_agent.agent.memory.repository.ConversationHistoryRepository;
+import com.service.ai_agent.domain.ConversationHistory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer cho conversation history và vector store.
+ * Interaction được đưa vào một hàng đợi có giới hạn và được flush theo lô bởi một thread nền:
+ * một câu INSERT nhiều dòng vào conversation_history, còn document được chuyển cho BatchingVectorStoreWriter.
+ * Khi hàng đợi đầy hoặc buffer đã dừng, interaction được ghi đồng bộ trên thread gọi.
+ *
+ * Câu INSERT lỗi được thử lại với backoff tăng dần (tối đa max-attempts lần); vẫn lỗi thì ghi lần lượt từng
+ * interaction để một dòng hỏng không kéo theo cả lô. Callback onPersisted và document cho vector store
+ * chỉ được xử lý cho các interaction đã thực sự được ghi vào conversation_history.
+ */
+@Component
+@Slf4j
+public class ConversationWriteBehindBuffer implements SmartLifecycle {
+
+    private static final String INSERT_PREFIX = "INSERT INTO conversation_history " +
+            "(id, tenant_id, user_id, session_id, role, content, request_type, message_type, metadata, created_at, updated_at) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?, ?)";
+    private static final int COLUMNS = 11;
+    // PostgreSQL giới hạn 65535 tham số bind cho một câu lệnh
+    static final int MAX_ROWS_PER_INSERT = 65535 / COLUMNS;
+
+    private final Optional<JdbcTemplate> jdbcTemplate;
+    private final Optional<ConversationHistoryRepository> historyRepository;
+    private final BatchingVectorStoreWriter vectorStoreWriter;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final BlockingQueue<PendingInteraction> queue;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * Một interaction đã được chuẩn bị sẵn, chờ ghi xuống storage.
+     * @param onPersisted Chạy trên thread flush sau khi entries đã được ghi; không chạy nếu ghi lỗi hẳn.
+     */
+    public record PendingInteraction(List<ConversationHistory> entries, List<Document> documents, Runnable onPersisted) {}
+
+    public ConversationWriteBehindBuffer(Optional<JdbcTemplate> jdbcTemplate,
+                                         Optional<ConversationHistoryRepository> historyRepository,
+                                         BatchingVectorStoreWriter vectorStoreWriter,
+                                         ObjectMapper objectMapper,
+                                         @Value("${agent.memory.write-behind.enabled:false}") boolean enabled,
+                                         @Value("${agent.memory.write-behind.queue-capacity:10000}") int queueCapacity,
+                                         @Value("${agent.memory.write-behind.flush-size:100}") int flushSize,
+                                         @Value("${agent.memory.write-behind.flush-interval-ms:500}") long flushIntervalMs,
+                                         @Value("${agent.memory.write-behind.max-attempts:3}") int maxAttempts,
+                                         @Value("${agent.memory.write-behind.retry-backoff-ms:200}") long retryBackoffMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.historyRepository = historyRepository;
+        this.vectorStoreWriter = vectorStoreWriter;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Đưa interaction vào hàng đợi. Nếu hàng đợi đầy hoặc buffer không chạy thì ghi ngay trên thread hiện tại.
+     */
+    public void enqueue(PendingInteraction interaction) {
+        if (running && queue.offer(interaction)) {
+            return;
+        }
+        log.warn("Write-behind queue unavailable (running: {}, size: {}), writing interaction synchronously",
+                running, queue.size());
+        flush(List.of(interaction));
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "conversation-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Conversation write-behind started (flush size: {}, interval: {} ms)", flushSize, flushIntervalMs);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        // Ngừng nhận interaction mới; thread flush sẽ drain phần còn lại trong hàng đợi rồi thoát
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Thread flush vẫn đang ghi (DB chậm): nó sẽ tự drain phần còn lại, không ghi song song với nó
+        if (flusher.isAlive()) {
+            log.warn("Write-behind flusher still running after 30s, leaving {} pending interactions to it", queue.size());
+        } else if (!queue.isEmpty()) {
+            log.warn("Draining {} pending interactions on shutdown", queue.size());
+            drainRemaining();
+        }
+        log.info("Conversation write-behind stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runFlushLoop() {
+        List<PendingInteraction> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingInteraction first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Gom thêm cho đến khi đủ flushSize hoặc hết flushInterval tính từ phần tử đầu tiên
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    PendingInteraction next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Unexpected error in conversation write-behind loop: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void drainRemaining() {
+        List<PendingInteraction> batch = new ArrayList<>(flushSize);
+        while (queue.drainTo(batch, flushSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingInteraction> batch) {
+        List<PendingInteraction> persisted = new ArrayList<>(batch.size());
+        int rows = 0;
+        int chunkStart = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingInteraction interaction = batch.get(i);
+            // Mỗi câu INSERT giữ dưới giới hạn tham số bind, một interaction không bị tách giữa hai câu
+            if (rows > 0 && rows + interaction.entries().size() > MAX_ROWS_PER_INSERT) {
+                persisted.addAll(writeChunk(batch.subList(chunkStart, i), rows));
+                chunkStart = i;
+                rows = 0;
+            }
+            rows += interaction.entries().size();
+        }
+        persisted.addAll(writeChunk(batch.subList(chunkStart, batch.size()), rows));
+
+        // Chỉ đưa vào vector store các interaction đã có trong conversation_history;
+        // lỗi vector được BatchingVectorStoreWriter ghi nhận theo từng document
+        List<Document> documents = new ArrayList<>();
+        for (PendingInteraction interaction : persisted) {
+            documents.addAll(interaction.documents());
+            try {
+                interaction.onPersisted().run();
+            } catch (Exception e) {
+                log.warn("Post-persist callback failed: {}", e.getMessage());
+            }
+        }
+        vectorStoreWriter.submit(documents);
+
+        log.debug("Flushed {} of {} interactions ({} documents)", persisted.size(), batch.size(), documents.size());
+    }
+
+    /**
+     * Ghi một chunk, thử lại với backoff khi lỗi; hết số lần thử thì ghi riêng từng interaction.
+     * @return Các interaction đã được ghi.
+     */
+    private List<PendingInteraction> writeChunk(List<PendingInteraction> chunk, int rows) {
+        List<ConversationHistory> entries = new ArrayList<>(rows);
+        chunk.forEach(interaction -> entries.addAll(interaction.entries()));
+        if (writeWithRetry(entries)) {
+            return chunk;
+        }
+        if (chunk.size() == 1) {
+            log.error("Dropping interaction with {} conversation entries after {} attempts", rows, maxAttempts);
+            return List.of();
+        }
+        log.warn("Chunk of {} conversation entries failed {} times, writing interactions one by one",
+                entries.size(), maxAttempts);
+        List<PendingInteraction> persisted = new ArrayList<>(chunk.size());
+        for (PendingInteraction interaction : chunk) {
+            if (writeWithRetry(interaction.entries())) {
+                persisted.add(interaction);
+            } else {
+                log.error("Dropping interaction with {} conversation entries (session {}) after {} attempts",
+                        interaction.entries().size(), interaction.entries().get(0).getSessionId(), maxAttempts);
+            }
+        }
+        return persisted;
+    }
+
+    private boolean writeWithRetry(List<ConversationHistory> entries) {
+        long backoff = retryBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // Một câu INSERT là nguyên tử: lần lỗi không để lại dòng nào, thử lại không bị trùng
+                writeHistory(entries);
+                return true;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    log.error("Failed to write {} conversation entries: {}", entries.size(), e.getMessage(), e);
+                    return false;
+                }
+                log.warn("Writing {} conversation entries failed (attempt {}/{}), retrying in {} ms: {}",
+                        entries.size(), attempt, maxAttempts, backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff *= 2;
+        }
+    }
+
+    private void writeHistory(List<ConversationHistory> entries) throws JsonProcessingException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (jdbcTemplate.isEmpty()) {
+            historyRepository.ifPresent(repository -> repository.saveAll(entries));
+            return;
+        }
+
+        // Một câu INSERT nhiều dòng cho cả lô thay vì một round trip cho mỗi dòng
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(entries.size() * COLUMNS);
+        Timestamp now = Timestamp.from(Instant.now());
+        for (int i = 0; i < entries.size(); i++) {
+            ConversationHistory entry = entries.get(i);
+            sql.append(i == 0 ? "" : ", ").append(INSERT_ROW);
+            args.add(UUID.randomUUID());
+            args.add(entry.getTenantId());
+            args.add(entry.getUserId());
+            args.add(entry.getSessionId());
+            args.add(entry.getRole().name());
+            args.add(entry.getContent());
+            args.add(entry.getRequestType() != null ? entry.getRequestType().name() : null);
+            args.add(entry.getMessageType() != null ? entry.getMessageType().name() : null);
+            args.add(objectMapper.writeValueAsString(entry.getMetadata()));
+            args.add(Timestamp.from(entry.getCreatedAt() != null ? entry.getCreatedAt() : now.toInstant()));
+            args.add(now);
+        }
+        jdbcTemplate.get().update(sql.toString(), args.toArray());
+    }
+}
\ No newline at end of file
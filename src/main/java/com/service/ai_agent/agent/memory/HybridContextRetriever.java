@@ -0,0 +1,208 @@
+package com.service.ai_agent.agent.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Phần "liên quan" của retrieval dạng hybrid: các turn gần nhất lấy thẳng từ DB (không embedding),
+ * còn các turn cũ hơn nhưng liên quan tới input hiện tại được tìm bằng similarity search trên chính input đó.
+ *
+ * Kết quả bỏ các turn đã có trong phần gần nhất, rồi được re-rank theo MMR (relevance trừ độ trùng lặp
+ * với các turn đã chọn, đo bằng Jaccard trên từ) để không lấy nhiều turn nói cùng một chuyện.
+ * Mỗi lần search tốn đúng một lời gọi embedding; input rỗng thì không search.
+ */
+@Component
+@Slf4j
+public class HybridContextRetriever {
+
+    public static final String MODE_HYBRID = "hybrid";
+
+    private final Optional<VectorStore> vectorStore;
+    private final boolean enabled;
+    private final int relevantMessages;
+    private final int candidates;
+    private final double similarityThreshold;
+    private final double diversityLambda;
+
+    private final LongAdder retrievals = new LongAdder();
+    private final LongAdder embeddingCalls = new LongAdder();
+    private final LongAdder skippedQueries = new LongAdder();
+    private final LongAdder candidateCount = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder added = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param embeddingCallsPerRetrieval Số lời gọi embedding trung bình cho mỗi lần dựng context.
+     */
+    public record Stats(boolean enabled, long retrievals, long embeddingCalls, double embeddingCallsPerRetrieval,
+                        long skippedQueries, long candidates, long duplicatesRemoved, long relevantAdded,
+                        long failures) {}
+
+    private record Candidate(String line, double relevance, Set<String> words, Instant timestamp) {}
+
+    public HybridContextRetriever(Optional<VectorStore> vectorStore,
+                                  @Value("${agent.memory.retrieval.mode:hybrid}") String mode,
+                                  @Value("${agent.memory.retrieval.relevant-messages:4}") int relevantMessages,
+                                  @Value("${agent.memory.retrieval.candidates:12}") int candidates,
+                                  @Value("${agent.memory.retrieval.similarity-threshold:0.5}") double similarityThreshold,
+                                  @Value("${agent.memory.retrieval.diversity-lambda:0.7}") double diversityLambda) {
+        this.vectorStore = vectorStore;
+        this.enabled = MODE_HYBRID.equalsIgnoreCase(mode) && vectorStore.isPresent() && relevantMessages > 0;
+        this.relevantMessages = relevantMessages;
+        this.candidates = Math.max(candidates, relevantMessages);
+        this.similarityThreshold = similarityThreshold;
+        this.diversityLambda = diversityLambda;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Các turn cũ liên quan tới query, theo thứ tự thời gian, không trùng với recentContext.
+     * Lỗi search được bỏ qua: context vẫn còn phần gần nhất.
+     */
+    public List<String> findRelevant(String sessionId, String tenantId, String query, String recentContext) {
+        retrievals.increment();
+        if (!enabled || query == null || query.isBlank()) {
+            skippedQueries.increment();
+            return List.of();
+        }
+
+        List<Document> results;
+        try {
+            embeddingCalls.increment();
+            results = vectorStore.get().similaritySearch(SearchRequest.builder()
+                    .query(query)
+                    .filterExpression(sessionFilter(sessionId, tenantId))
+                    .topK(candidates)
+                    .similarityThreshold(similarityThreshold)
+                    .build());
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("Relevant turn search failed for session {}: {}", sessionId, e.getMessage());
+            return List.of();
+        }
+        if (results == null || results.isEmpty()) {
+            return List.of();
+        }
+        candidateCount.add(results.size());
+
+        // Bỏ các turn đã nằm trong phần gần nhất hoặc trùng nhau
+        List<Candidate> pool = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Document document : results) {
+            String text = document.getText();
+            if (text == null || text.isBlank() || recentContext.contains(text) || !seen.add(text)) {
+                duplicates.increment();
+                continue;
+            }
+            String role = String.valueOf(document.getMetadata().get("role")).toLowerCase(Locale.ROOT);
+            pool.add(new Candidate(String.format("[%s]: %s", role, text),
+                    document.getScore() != null ? document.getScore() : 0,
+                    words(text),
+                    parseTimestamp(document.getMetadata().get("timestamp"))));
+        }
+
+        List<Candidate> selected = rerank(pool);
+        added.add(selected.size());
+        return selected.stream()
+                .sorted(Comparator.comparing(Candidate::timestamp))
+                .map(Candidate::line)
+                .toList();
+    }
+
+    public Stats getStats() {
+        long count = retrievals.sum();
+        return new Stats(enabled, count, embeddingCalls.sum(), count > 0 ? (double) embeddingCalls.sum() / count : 0,
+                skippedQueries.sum(), candidateCount.sum(), duplicates.sum(), added.sum(), failures.sum());
+    }
+
+    /**
+     * Maximal marginal relevance: mỗi bước chọn candidate có
+     * lambda * relevance - (1 - lambda) * max(Jaccard với các candidate đã chọn) lớn nhất.
+     */
+    private List<Candidate> rerank(List<Candidate> pool) {
+        List<Candidate> remaining = new ArrayList<>(pool);
+        List<Candidate> selected = new ArrayList<>();
+        while (selected.size() < relevantMessages && !remaining.isEmpty()) {
+            Candidate best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Candidate candidate : remaining) {
+                double redundancy = 0;
+                for (Candidate chosen : selected) {
+                    redundancy = Math.max(redundancy, jaccard(candidate.words(), chosen.words()));
+                }
+                double score = diversityLambda * candidate.relevance() - (1 - diversityLambda) * redundancy;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = candidate;
+                }
+            }
+            selected.add(best);
+            remaining.remove(best);
+        }
+        return selected;
+    }
+
+    /**
+     * Filter dựng bằng FilterExpressionBuilder: id do client gửi lên là giá trị, không bị ghép vào chuỗi DSL,
+     * nên id chứa dấu nháy không làm hỏng câu lọc hay mở rộng nó sang session/tenant khác.
+     */
+    private static Filter.Expression sessionFilter(String sessionId, String tenantId) {
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        return b.and(b.eq("sessionId", sessionId), b.eq("tenantId", tenantId)).build();
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int intersection = 0;
+        for (String word : a) {
+            if (b.contains(word)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    private static Instant parseTimestamp(Object value) {
+        if (value == null) {
+            return Instant.EPOCH;
+        }
+        try {
+            return Instant.parse(value.toString());
+        } catch (DateTimeParseException e) {
+            return Instant.EPOCH;
+        }
+    }
+}
\ No newline at end of file
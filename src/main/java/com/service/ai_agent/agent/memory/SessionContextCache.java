@@ -0,0 +1,131 @@
+package com.service.ai_agent.agent.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cache context theo session trong bộ nhớ, key là (tenantId, sessionId).
+ * Giới hạn số session (LRU) và tự hết hạn khi session không được dùng trong một khoảng thời gian.
+ * Entry được cập nhật tăng dần khi có interaction mới thay vì bị invalidate,
+ * nên turn tiếp theo của một session "nóng" không cần round trip xuống database.
+ * Entry được load trong lúc interaction đang được ghi có thể đã chứa các dòng đó, nên bị bỏ đi thay vì append.
+ *
+ * Lưu ý: khi chạy nhiều node cần sticky session, nếu không entry có thể thiếu các turn xử lý ở node khác.
+ */
+@Component
+@Slf4j
+public class SessionContextCache {
+
+    private final boolean enabled;
+    private final Cache<SessionKey, SessionContext> cache;
+
+    private record SessionKey(String tenantId, String sessionId) {}
+
+    /**
+     * Thống kê cache để tinh chỉnh kích thước theo traffic thực tế.
+     */
+    public record Stats(long size, long hitCount, long missCount, double hitRate, long evictionCount) {}
+
+    public SessionContextCache(@Value("${agent.memory.context-cache.enabled:false}") boolean enabled,
+                               @Value("${agent.memory.context-cache.max-sessions:10000}") long maxSessions,
+                               @Value("${agent.memory.context-cache.idle-ttl:PT30M}") Duration idleTtl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterAccess(idleTtl)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Lấy context của session từ cache, load bằng loader nếu chưa có.
+     * Các lời gọi đồng thời cho cùng một session chỉ load một lần.
+     */
+    public String get(String tenantId, String sessionId, ContextWindowProperties.Window window,
+                      Supplier<List<String>> loader) {
+        SessionContext context = cache.get(new SessionKey(tenantId, sessionId), key -> {
+            List<String> lines = loader.get();
+            return new SessionContext(window, lines, System.nanoTime());
+        });
+        return context.render();
+    }
+
+    /**
+     * Thêm các dòng vừa được lưu vào context đã cache của session. Không làm gì nếu session chưa có trong cache
+     * (lần đọc tiếp theo sẽ load từ storage, đã bao gồm các dòng này).
+     * Entry load xong sau khi bắt đầu ghi có thể đã đọc được các dòng này từ storage: bỏ entry đó
+     * để lần đọc sau load lại, tránh một turn xuất hiện hai lần.
+     * @param writeStartedNanos System.nanoTime() lấy trước khi bắt đầu ghi các dòng xuống storage.
+     */
+    public void append(String tenantId, String sessionId, long writeStartedNanos, List<String> lines) {
+        SessionKey key = new SessionKey(tenantId, sessionId);
+        SessionContext context = cache.getIfPresent(key);
+        if (context == null) {
+            return;
+        }
+        if (context.loadedAtNanos - writeStartedNanos < 0) {
+            context.append(lines);
+        } else {
+            // Chỉ bỏ đúng entry vừa kiểm tra, không đụng tới entry mới hơn nếu có
+            cache.asMap().remove(key, context);
+        }
+    }
+
+    public void invalidate(String tenantId, String sessionId) {
+        cache.invalidate(new SessionKey(tenantId, sessionId));
+    }
+
+    public Stats getStats() {
+        CacheStats stats = cache.stats();
+        return new Stats(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount());
+    }
+
+    /**
+     * Tail window của một session: giữ các dòng mới nhất trong giới hạn số message và số ký tự.
+     */
+    private static class SessionContext {
+
+        private final ContextWindowProperties.Window window;
+        // Thời điểm load xong từ storage (System.nanoTime)
+        private final long loadedAtNanos;
+        private final Deque<String> lines = new ArrayDeque<>();
+        private int totalChars;
+
+        SessionContext(ContextWindowProperties.Window window, List<String> initialLines, long loadedAtNanos) {
+            this.window = window;
+            this.loadedAtNanos = loadedAtNanos;
+            append(initialLines);
+        }
+
+        synchronized void append(List<String> newLines) {
+            for (String line : newLines) {
+                lines.addLast(line);
+                totalChars += line.length() + 1;
+            }
+            // Bỏ các dòng cũ nhất cho đến khi nằm trong window (luôn giữ lại dòng mới nhất)
+            while (lines.size() > 1
+                    && (lines.size() > window.getMaxMessages() || totalChars > window.getMaxChars())) {
+                totalChars -= lines.removeFirst().length() + 1;
+            }
+        }
+
+        synchronized String render() {
+            return String.join("\n", lines);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.service.ai_agent.agent.memory;
+
+import com.service.ai_agent.agent.memory.repository.ConversationHistoryRepository;
+import com.service.ai_agent.agent.memory.repository.ConversationSummaryRepository;
+import com.service.ai_agent.agent.memory.repository.ConversationTurn;
+import com.service.ai_agent.agent.metrics.TokenUsageAdvisor;
+import com.service.ai_agent.agent.prompt.CompiledPrompt;
+import com.service.ai_agent.agent.prompt.PromptRegistry;
+import com.service.ai_agent.domain.ConversationSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Chế độ memory dạng tóm tắt (agent.memory.mode=summary): mỗi session có một summary chạy dần
+ * cộng với các turn gần nhất ở dạng nguyên văn. Khi số message chưa được tóm tắt vượt ngưỡng,
+ * các message cũ nhất được gộp vào summary ở thread nền, không nằm trên đường xử lý request.
+ *
+ * Chi phí dựng context không phụ thuộc độ dài session: một dòng summary (unique index)
+ * và tối đa N message mới hơn mốc summarizedUntil.
+ */
+@Component
+@Slf4j
+public class SessionSummaryMemory {
+
+    public static final String MODE_SUMMARY = "summary";
+
+    private static final String FOLD_PROMPT_TEMPLATE = """
+            You maintain a running summary of a conversation between a user and 'SiteBuilder AI', an assistant for a website building platform.
+            Update the summary with the new messages. Keep facts the assistant needs later: the user's business, goals, preferences,
+            templates or plans discussed, websites created (with IDs/URLs), decisions made and open questions.
+            Write in the language of the conversation, as plain prose, at most {maxChars} characters. Respond with the updated summary only.
+
+            Current summary:
+            {summary}
+
+            New messages:
+            {messages}
+            """;
+
+    private final Optional<ConversationHistoryRepository> historyRepository;
+    private final Optional<ConversationSummaryRepository> summaryRepository;
+    private final ChatClient chatClient;
+    private final AsyncTaskExecutor executor;
+    private final CompiledPrompt foldPrompt;
+
+    private final boolean enabled;
+    private final int recentMessages;
+    private final int foldBatch;
+    private final int maxSummaryChars;
+
+    // Single-flight: mỗi session chỉ có một lần gộp đang chạy
+    private final Set<String> foldsInFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder folds = new LongAdder();
+    private final LongAdder foldedMessages = new LongAdder();
+    private final LongAdder foldFailures = new LongAdder();
+
+    public record Stats(boolean enabled, long folds, long foldedMessages, long foldFailures, int foldsInFlight) {}
+
+    public SessionSummaryMemory(Optional<ConversationHistoryRepository> historyRepository,
+                                Optional<ConversationSummaryRepository> summaryRepository,
+                                @Qualifier("plainChatClient") ChatClient chatClient,
+                                @Qualifier("agentTaskExecutor") AsyncTaskExecutor executor,
+                                PromptRegistry promptRegistry,
+                                @Value("${agent.memory.mode:window}") String mode,
+                                @Value("${agent.memory.summary.recent-messages:6}") int recentMessages,
+                                @Value("${agent.memory.summary.fold-batch:10}") int foldBatch,
+                                @Value("${agent.memory.summary.max-summary-chars:2000}") int maxSummaryChars) {
+        this.historyRepository = historyRepository;
+        this.summaryRepository = summaryRepository;
+        this.chatClient = chatClient;
+        this.executor = executor;
+        this.foldPrompt = promptRegistry.compile("memory.summary-fold", FOLD_PROMPT_TEMPLATE);
+        // Cần cả conversation_history và conversation_summary
+        this.enabled = MODE_SUMMARY.equalsIgnoreCase(mode)
+                && historyRepository.isPresent() && summaryRepository.isPresent();
+        this.recentMessages = recentMessages;
+        this.foldBatch = foldBatch;
+        this.maxSummaryChars = maxSummaryChars;
+        if (MODE_SUMMARY.equalsIgnoreCase(mode) && !enabled) {
+            log.warn("Summary memory mode requested but repositories are not available, using tail window");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Summary hiện tại của session, nếu có.
+     */
+    public Optional<ConversationSummary> findSummary(String tenantId, String sessionId) {
+        return summaryRepository.flatMap(repository -> repository.findByTenantIdAndSessionId(tenantId, sessionId));
+    }
+
+    /**
+     * Gọi sau mỗi interaction: nếu số message chưa tóm tắt vượt ngưỡng thì gộp ở nền.
+     */
+    public void onInteractionSaved(String tenantId, String sessionId) {
+        if (!enabled) {
+            return;
+        }
+        String key = tenantId + ":" + sessionId;
+        if (!foldsInFlight.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    foldIfNeeded(tenantId, sessionId);
+                } catch (Exception e) {
+                    foldFailures.increment();
+                    log.warn("Failed to fold conversation summary for session {}: {}", sessionId, e.getMessage());
+                } finally {
+                    foldsInFlight.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor từ chối (quá tải/đang shutdown): lần interaction sau sẽ thử lại
+            foldsInFlight.remove(key);
+            log.debug("Summary fold for session {} not scheduled: {}", sessionId, e.getMessage());
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(enabled, folds.sum(), foldedMessages.sum(), foldFailures.sum(), foldsInFlight.size());
+    }
+
+    private void foldIfNeeded(String tenantId, String sessionId) {
+        Optional<ConversationSummary> existing = findSummary(tenantId, sessionId);
+        Instant summarizedUntil = existing.map(ConversationSummary::getSummarizedUntil).orElse(Instant.EPOCH);
+
+        long unsummarized = historyRepository.get()
+                .countBySessionIdAndTenantIdAndCreatedAtAfter(sessionId, tenantId, summarizedUntil);
+        if (unsummarized < recentMessages + foldBatch) {
+            return;
+        }
+
+        // Giữ lại recentMessages message mới nhất ở dạng nguyên văn, gộp phần cũ hơn
+        int toFold = (int) (unsummarized - recentMessages);
+        List<ConversationTurn> turns = historyRepository.get()
+                .findOldestTurnsAfter(sessionId, tenantId, summarizedUntil, PageRequest.of(0, toFold));
+        if (turns.isEmpty()) {
+            return;
+        }
+
+        String messages = turns.stream()
+                .map(turn -> String.format("[%s]: %s", turn.role().getValue(), turn.content()))
+                .collect(Collectors.joining("\n"));
+        String currentSummary = existing.map(ConversationSummary::getSummary).orElse("(none)");
+        String prompt = foldPrompt.render(Map.of(
+                "maxChars", String.valueOf(maxSummaryChars),
+                "summary", currentSummary,
+                "messages", messages));
+
+        String updated = chatClient.prompt(new Prompt(new UserMessage(prompt)))
+                .advisors(TokenUsageAdvisor.params("summary", tenantId))
+                .call().content();
+        if (updated == null || updated.isBlank()) {
+            return;
+        }
+
+        ConversationSummary summary = existing.orElseGet(() -> ConversationSummary.builder()
+                .tenantId(tenantId)
+                .sessionId(sessionId)
+                .build());
+        summary.setSummary(updated.trim());
+        summary.setSummarizedUntil(turns.get(turns.size() - 1).createdAt());
+        summary.setSummarizedCount(summary.getSummarizedCount() + turns.size());
+        summaryRepository.get().save(summary);
+
+        folds.increment();
+        foldedMessages.add(turns.size());
+        log.debug("Folded {} messages into summary of session {} (total: {})",
+                turns.size(), sessionId, summary.getSummarizedCount());
+    }
+}
\ No newline at end of file
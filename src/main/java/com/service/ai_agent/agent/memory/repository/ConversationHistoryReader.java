@@ -0,0 +1,75 @@
+package com.service.ai_agent.agent.memory.repository;
+
+import com.service.ai_agent.domain.ConversationHistory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Read model JDBC cho conversation_history: chỉ đọc các cột cần dùng, không qua Hibernate
+ * (không có entity, không deserialize JSONB metadata, không đưa gì vào persistence context).
+ *
+ * readPage: lịch sử session theo trang keyset (created_at, id), stream từng dòng thay vì load cả trang vào List.
+ * PostgreSQL chỉ dùng cursor phía server (fetch size) khi autocommit tắt, nên việc đọc chạy trong transaction read-only.
+ */
+@Component
+public class ConversationHistoryReader {
+
+    private static final String SELECT_PAGE = "SELECT id, role, content, created_at FROM conversation_history " +
+            "WHERE tenant_id = ? AND session_id = ? AND (created_at, id) > (?, ?) " +
+            "ORDER BY created_at, id LIMIT ?";
+
+    // Không có cursor: bắt đầu từ đầu session
+    private static final HistoryCursor START = new HistoryCursor(Instant.EPOCH, new UUID(0, 0));
+
+    private final Optional<JdbcTemplate> jdbcTemplate;
+    private final int fetchSize;
+
+    public ConversationHistoryReader(Optional<JdbcTemplate> jdbcTemplate,
+                                     @Value("${agent.history.fetch-size:200}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    public boolean isAvailable() {
+        return jdbcTemplate.isPresent();
+    }
+
+    /**
+     * Đưa lần lượt tối đa limit dòng sau cursor cho consumer, theo thứ tự thời gian.
+     * @param after Vị trí cuối của trang trước, null để đọc từ đầu.
+     * @return Số dòng đã đọc.
+     */
+    @Transactional(readOnly = true)
+    public int readPage(String tenantId, String sessionId, HistoryCursor after, int limit, Consumer<HistoryEntry> consumer) {
+        HistoryCursor from = after != null ? after : START;
+        int[] count = {0};
+        jdbcTemplate.get().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_PAGE);
+            statement.setFetchSize(fetchSize);
+            statement.setString(1, tenantId);
+            statement.setString(2, sessionId);
+            statement.setTimestamp(3, Timestamp.from(from.createdAt()));
+            statement.setObject(4, from.id());
+            statement.setInt(5, limit);
+            return statement;
+        }, rs -> {
+            consumer.accept(new HistoryEntry(
+                    rs.getObject(1, UUID.class),
+                    ConversationHistory.ConversationRole.valueOf(rs.getString(2)),
+                    rs.getString(3),
+                    rs.getObject(4, OffsetDateTime.class).toInstant()));
+            count[0]++;
+        });
+        return count[0];
+    }
+}
\ No newline at end of file
@@ -4,9 +4,11 @@ import com.service.ai_agent.domain.ConversationHistory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
@@ -26,6 +28,47 @@ public interface ConversationHistoryRepository extends JpaRepository<Conversatio
     List<ConversationHistory> findBySessionIdAndTenantIdOrderByCreatedAtAsc(
             String sessionId, String tenantId);
 
+    /**
+     * Lấy các message gần nhất của session (mới nhất trước), chỉ project role và content.
+     * Giới hạn số dòng qua Pageable, dùng index (tenant_id, session_id, created_at).
+     */
+    @Query("SELECT new com.service.ai_agent.agent.memory.repository.ConversationTurn(ch.role, ch.content, ch.createdAt) " +
+           "FROM ConversationHistory ch WHERE ch.tenantId = :tenantId AND ch.sessionId = :sessionId " +
+           "ORDER BY ch.createdAt DESC")
+    List<ConversationTurn> findRecentTurns(
+            @Param("sessionId") String sessionId,
+            @Param("tenantId") String tenantId,
+            Pageable pageable);
+
+    /**
+     * Như findRecentTurns nhưng chỉ lấy các message mới hơn mốc after (chưa được gộp vào summary).
+     */
+    @Query("SELECT new com.service.ai_agent.agent.memory.repository.ConversationTurn(ch.role, ch.content, ch.createdAt) " +
+           "FROM ConversationHistory ch WHERE ch.tenantId = :tenantId AND ch.sessionId = :sessionId " +
+           "AND ch.createdAt > :after ORDER BY ch.createdAt DESC")
+    List<ConversationTurn> findRecentTurnsAfter(
+            @Param("sessionId") String sessionId,
+            @Param("tenantId") String tenantId,
+            @Param("after") Instant after,
+            Pageable pageable);
+
+    /**
+     * Các message cũ nhất mới hơn mốc after, theo thứ tự thời gian; dùng để gộp dần vào summary.
+     */
+    @Query("SELECT new com.service.ai_agent.agent.memory.repository.ConversationTurn(ch.role, ch.content, ch.createdAt) " +
+           "FROM ConversationHistory ch WHERE ch.tenantId = :tenantId AND ch.sessionId = :sessionId " +
+           "AND ch.createdAt > :after ORDER BY ch.createdAt ASC")
+    List<ConversationTurn> findOldestTurnsAfter(
+            @Param("sessionId") String sessionId,
+            @Param("tenantId") String tenantId,
+            @Param("after") Instant after,
+            Pageable pageable);
+
+    /**
+     * Số message của session mới hơn mốc after.
+     */
+    long countBySessionIdAndTenantIdAndCreatedAtAfter(String sessionId, String tenantId, Instant after);
+
     /**
      * Tìm conversation theo userId, tenantId với phân trang
      */
@@ -62,18 +105,22 @@ public interface ConversationHistoryRepository extends JpaRepository<Conversatio
             String sessionId, String tenantId, ConversationHistory.ConversationRole role);
 
     /**
-     * Xóa conversation cũ hơn thời gian chỉ định
+     * Xóa conversation cũ hơn thời gian chỉ định, trong một câu DELETE.
+     * Với bảng lớn nên dùng ConversationRetentionJob.purgeTenant (xóa theo chunk).
      */
+    @Modifying
+    @Transactional
     @Query("DELETE FROM ConversationHistory ch WHERE ch.tenantId = :tenantId " +
            "AND ch.createdAt < :cutoffTime")
-    void deleteOldConversations(@Param("tenantId") String tenantId,
+    int deleteOldConversations(@Param("tenantId") String tenantId,
                                @Param("cutoffTime") Instant cutoffTime);
 
     /**
-     * Tìm conversation có metadata key cụ thể (JSONB query)
+     * Tìm conversation có metadata key cụ thể (JSONB query).
+     * Dùng jsonb_exists thay cho toán tử ?, vì Spring Data hiểu ? là tham số JDBC và không tạo được query.
      */
     @Query(value = "SELECT * FROM conversation_history " +
-                   "WHERE tenant_id = :tenantId AND metadata ? :metadataKey",
+                   "WHERE tenant_id = :tenantId AND jsonb_exists(metadata, :metadataKey)",
            nativeQuery = true)
     List<ConversationHistory> findByTenantIdAndMetadataKey(
             @Param("tenantId") String tenantId,
@@ -91,15 +138,13 @@ public interface ConversationHistoryRepository extends JpaRepository<Conversatio
             @Param("metadataValue") String metadataValue);
 
     /**
-     * Tìm conversation theo request type từ metadata
+     * Tìm conversation theo request type (cột request_type, index (tenant_id, request_type, created_at))
      */
-    @Query(value = "SELECT * FROM conversation_history " +
-                   "WHERE tenant_id = :tenantId AND metadata ->> 'request_type' = :requestType " +
-                   "ORDER BY created_at DESC",
-           nativeQuery = true)
+    @Query("SELECT ch FROM ConversationHistory ch WHERE ch.tenantId = :tenantId " +
+           "AND ch.requestType = :requestType ORDER BY ch.createdAt DESC")
     List<ConversationHistory> findByTenantIdAndRequestType(
             @Param("tenantId") String tenantId,
-            @Param("requestType") String requestType);
+            @Param("requestType") ConversationHistory.RequestType requestType);
 
     /**
      * Search trong metadata với JSONB contains operator
@@ -0,0 +1,17 @@
+package com.service.ai_agent.agent.memory.repository;
+
+import com.service.ai_agent.domain.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, UUID> {
+
+    /**
+     * Summary của session, tra cứu qua unique index (tenant_id, session_id).
+     */
+    Optional<ConversationSummary> findByTenantIdAndSessionId(String tenantId, String sessionId);
+}
\ No newline at end of file
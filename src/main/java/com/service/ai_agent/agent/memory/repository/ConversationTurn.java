@@ -0,0 +1,12 @@
+package com.service.ai_agent.agent.memory.repository;
+
+import com.service.ai_agent.domain.ConversationHistory;
+
+import java.time.Instant;
+
+/**
+ * Projection gọn nhẹ của một message trong conversation, chỉ gồm role, content và thời điểm tạo.
+ * Dùng cho việc dựng context, không load entity và JSONB metadata.
+ */
+public record ConversationTurn(ConversationHistory.ConversationRole role, String content, Instant createdAt) {
+}
\ No newline at end of file
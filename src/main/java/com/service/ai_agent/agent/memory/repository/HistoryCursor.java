@@ -0,0 +1,35 @@
+package com.service.ai_agent.agent.memory.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Vị trí keyset trong lịch sử của một session: (created_at, id) của message cuối cùng đã trả về.
+ * Trang tiếp theo bắt đầu ngay sau vị trí này, không dùng OFFSET nên chi phí không tăng theo độ sâu trang.
+ * Được mã hóa thành chuỗi base64url để client chỉ việc gửi lại.
+ */
+public record HistoryCursor(Instant createdAt, UUID id) {
+
+    public String encode() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt);
+        String raw = micros + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException Cursor không hợp lệ.
+     */
+    public static HistoryCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('_');
+            long micros = Long.parseLong(raw.substring(0, separator));
+            return new HistoryCursor(Instant.EPOCH.plus(micros, ChronoUnit.MICROS), UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid history cursor", e);
+        }
+    }
+}
\ No newline at end of file
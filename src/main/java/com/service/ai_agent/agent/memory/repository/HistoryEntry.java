@@ -0,0 +1,16 @@
+package com.service.ai_agent.agent.memory.repository;
+
+import com.service.ai_agent.domain.ConversationHistory;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Một dòng lịch sử cho API đọc history: chỉ các cột cần hiển thị, không có metadata.
+ */
+public record HistoryEntry(UUID id, ConversationHistory.ConversationRole role, String content, Instant createdAt) {
+
+    public HistoryCursor cursor() {
+        return new HistoryCursor(createdAt, id);
+    }
+}
\ No newline at end of file
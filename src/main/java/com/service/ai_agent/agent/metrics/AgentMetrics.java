@@ -0,0 +1,146 @@
+package com.service.ai_agent.agent.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Metrics Micrometer cho pipeline của agent, xuất ra Prometheus qua /actuator/prometheus:
+ * - agent.request: toàn bộ một chat, theo route
+ * - agent.stage: từng giai đoạn (routing, memory_retrieval, llm, save_interaction...)
+ * - agent.llm.tokens: prompt/completion token theo use case
+ * - agent.tool.calls: từng lần gọi tool (nguồn duy nhất cho latency của tool)
+ *
+ * Tag tenant có số giá trị giới hạn: chỉ các tenant trong agent.metrics.tenant-tags.include (nếu có khai báo),
+ * hoặc max tenant đầu tiên gặp; các tenant còn lại gộp vào "other".
+ */
+@Component
+public class AgentMetrics {
+
+    private static final String OTHER = "other";
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+    private final Set<String> includedTenants;
+    private final int maxTenantTags;
+    private final Set<String> seenTenants = ConcurrentHashMap.newKeySet();
+
+    public AgentMetrics(MeterRegistry registry,
+                        @Value("${agent.metrics.tenant-tags.include:}") List<String> includedTenants,
+                        @Value("${agent.metrics.tenant-tags.max:50}") int maxTenantTags) {
+        this.registry = registry;
+        this.includedTenants = Set.copyOf(includedTenants.stream().filter(t -> !t.isBlank()).toList());
+        this.maxTenantTags = maxTenantTags;
+    }
+
+    /**
+     * Đo một giai đoạn của pipeline; outcome=error nếu action ném exception.
+     */
+    public <T> T recordStage(String stage, String tenantId, Supplier<T> action) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = action.get();
+            outcome = "success";
+            return result;
+        } finally {
+            stageTimer(stage, tenantId, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordStage(String stage, String tenantId, Runnable action) {
+        recordStage(stage, tenantId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void recordStage(String stage, String tenantId, long nanos, boolean success) {
+        stageTimer(stage, tenantId, success ? "success" : "error").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRequest(String route, String tenantId, long nanos, boolean success) {
+        Timer.builder("agent.request")
+                .description("End-to-end chat processing time")
+                .tag("route", route != null ? route : UNKNOWN)
+                .tag("tenant", tenantTag(tenantId))
+                .tag("outcome", success ? "success" : "error")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTokens(String useCase, String tenantId, Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        String tenant = tenantTag(tenantId);
+        String useCaseTag = useCase != null ? useCase : UNKNOWN;
+        incrementTokens("prompt", useCaseTag, tenant, usage.getPromptTokens());
+        incrementTokens("completion", useCaseTag, tenant, usage.getCompletionTokens());
+    }
+
+    /**
+     * @param outcome success hoặc error
+     */
+    public void recordTool(String tool, long nanos, String outcome) {
+        // Tên tool là tên bean đã đăng ký, số lượng cố định
+        Timer.builder("agent.tool.calls")
+                .description("Tool execution time")
+                .tag("tool", tool)
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Giá trị tag tenant, giới hạn số lượng để không làm bùng nổ số time series.
+     */
+    public String tenantTag(String tenantId) {
+        if (tenantId == null || tenantId.isBlank()) {
+            return UNKNOWN;
+        }
+        if (!includedTenants.isEmpty()) {
+            return includedTenants.contains(tenantId) ? tenantId : OTHER;
+        }
+        if (seenTenants.contains(tenantId)) {
+            return tenantId;
+        }
+        // Có thể vượt max một chút khi nhiều thread thêm cùng lúc, chấp nhận được
+        if (seenTenants.size() < maxTenantTags) {
+            seenTenants.add(tenantId);
+            return tenantId;
+        }
+        return OTHER;
+    }
+
+    private Timer stageTimer(String stage, String tenantId, String outcome) {
+        return Timer.builder("agent.stage")
+                .description("Time spent in one stage of the agent pipeline")
+                .tag("stage", stage)
+                .tag("tenant", tenantTag(tenantId))
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private void incrementTokens(String type, String useCase, String tenant, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        Counter.builder("agent.llm.tokens")
+                .description("Tokens reported by the chat model")
+                .tag("type", type)
+                .tag("use_case", useCase)
+                .tag("tenant", tenant)
+                .register(registry)
+                .increment(tokens);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.service.ai_agent.agent.metrics;
+
+import com.service.ai_agent.agent.memory.BatchingVectorStoreWriter;
+import com.service.ai_agent.agent.memory.ConversationRetentionJob;
+import com.service.ai_agent.agent.memory.HybridContextRetriever;
+import com.service.ai_agent.agent.memory.SessionContextCache;
+import com.service.ai_agent.agent.memory.SessionSummaryMemory;
+import com.service.ai_agent.agent.tools.ToolMetrics;
+import com.service.ai_agent.agent.workflow.orchestrator.SemanticResponseCache;
+import com.service.ai_agent.agent.workflow.route.IntentBasedRoutingWorkflow;
+import com.service.ai_agent.infrastructure.embedding.CachingEmbeddingModel;
+import com.service.ai_agent.infrastructure.laravel_api.LaravelHttpMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Đưa các bộ đếm LongAdder sẵn có (đang xem qua /api/v1/stats) sang Micrometer, để Prometheus scrape được
+ * mà không phải đếm hai lần trên đường nóng. Giá trị được đọc từ getStats() lúc scrape.
+ */
+@Component
+@RequiredArgsConstructor
+public class AgentStatsMeterBinder implements MeterBinder {
+
+    private final IntentBasedRoutingWorkflow intentBasedRoutingWorkflow;
+    private final SessionContextCache sessionContextCache;
+    private final SessionSummaryMemory sessionSummaryMemory;
+    private final HybridContextRetriever hybridContextRetriever;
+    private final BatchingVectorStoreWriter vectorStoreWriter;
+    private final ConversationRetentionJob retentionJob;
+    private final SemanticResponseCache semanticResponseCache;
+    private final CachingEmbeddingModel cachingEmbeddingModel;
+    private final ToolMetrics toolMetrics;
+    private final LaravelHttpMetrics laravelHttpMetrics;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        IntentBasedRoutingWorkflow router = intentBasedRoutingWorkflow;
+        counter(registry, "agent.routing.decisions", router, r -> r.getTierStats().cacheResolved(), "tier", "cache");
+        counter(registry, "agent.routing.decisions", router, r -> r.getTierStats().localResolved(), "tier", "local");
+        counter(registry, "agent.routing.decisions", router, r -> r.getTierStats().llmResolved(), "tier", "llm");
+
+        SessionContextCache contextCache = sessionContextCache;
+        counter(registry, "agent.session_context_cache.requests", contextCache, c -> c.getStats().hitCount(), "result", "hit");
+        counter(registry, "agent.session_context_cache.requests", contextCache, c -> c.getStats().missCount(), "result", "miss");
+        gauge(registry, "agent.session_context_cache.size", contextCache, c -> c.getStats().size());
+
+        counter(registry, "agent.memory.summary.folds", sessionSummaryMemory, s -> s.getStats().folds(), "outcome", "success");
+        counter(registry, "agent.memory.summary.folds", sessionSummaryMemory, s -> s.getStats().foldFailures(), "outcome", "error");
+
+        counter(registry, "agent.memory.retrieval.embedding_calls", hybridContextRetriever,
+                r -> r.getStats().embeddingCalls());
+        counter(registry, "agent.memory.retrieval.relevant_added", hybridContextRetriever,
+                r -> r.getStats().relevantAdded());
+
+        BatchingVectorStoreWriter writer = vectorStoreWriter;
+        counter(registry, "agent.vector_writes.documents", writer, w -> w.getStats().written(), "outcome", "success");
+        counter(registry, "agent.vector_writes.documents", writer, w -> w.getStats().failed(), "outcome", "error");
+        counter(registry, "agent.vector_writes.add_calls", writer, w -> w.getStats().addCalls());
+        gauge(registry, "agent.vector_writes.queue_size", writer, w -> w.getStats().queueSize());
+
+        counter(registry, "agent.retention.rows_purged", retentionJob, j -> j.getStats().rowsPurged());
+        counter(registry, "agent.retention.partitions_removed", retentionJob, j -> j.getStats().partitionsRemoved());
+        counter(registry, "agent.retention.failures", retentionJob, j -> j.getStats().failures());
+
+        SemanticResponseCache responseCache = semanticResponseCache;
+        counter(registry, "agent.response_cache.lookups", responseCache, c -> c.getStats().exactHits(), "result", "exact_hit");
+        counter(registry, "agent.response_cache.lookups", responseCache, c -> c.getStats().semanticHits(), "result", "semantic_hit");
+        counter(registry, "agent.response_cache.lookups", responseCache,
+                c -> c.getStats().lookups() - c.getStats().exactHits() - c.getStats().semanticHits(), "result", "miss");
+
+        CachingEmbeddingModel embeddingCache = cachingEmbeddingModel;
+        counter(registry, "agent.embedding_cache.lookups", embeddingCache, c -> c.getStats().heapHits(), "result", "heap_hit");
+        counter(registry, "agent.embedding_cache.lookups", embeddingCache, c -> c.getStats().fileHits(), "result", "file_hit");
+        counter(registry, "agent.embedding_cache.lookups", embeddingCache, c -> c.getStats().misses(), "result", "miss");
+        counter(registry, "agent.embedding.api_calls", embeddingCache, c -> c.getStats().apiCalls());
+
+        counter(registry, "agent.tool.batches", toolMetrics, m -> m.getBatchStats().batches());
+        // Thời gian tiết kiệm được khi nhiều tool trong một lượt chạy song song
+        counter(registry, "agent.tool.parallel_saved_seconds", toolMetrics,
+                m -> m.getBatchStats().savedMillis() / 1000.0);
+
+        gauge(registry, "laravel.http.pool.leased", laravelHttpMetrics, m -> m.getPoolUtilisation().leased());
+        gauge(registry, "laravel.http.pool.pending", laravelHttpMetrics, m -> m.getPoolUtilisation().pending());
+        gauge(registry, "laravel.http.pool.max", laravelHttpMetrics, m -> m.getPoolUtilisation().max());
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, T source, ToDoubleFunction<T> value,
+                                    String... tags) {
+        FunctionCounter.builder(name, source, value).tags(tags).register(registry);
+    }
+
+    private static <T> void gauge(MeterRegistry registry, String name, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value).register(registry);
+    }
+}
\ No newline at end of file
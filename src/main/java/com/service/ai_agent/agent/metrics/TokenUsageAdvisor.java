@@ -0,0 +1,93 @@
+package com.service.ai_agent.agent.metrics;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Advisor mặc định của các ChatClient: ghi số prompt/completion token mà model báo về vào AgentMetrics.
+ * Tenant và use case lấy từ tham số advisor do nơi gọi truyền vào qua TokenUsageAdvisor.params(...).
+ *
+ * Usage đã bao gồm các vòng gọi tool trong cùng lời gọi. Với stream, usage chỉ có ở chunk cuối
+ * (spring.ai.openai.chat.options.stream-usage=true).
+ */
+@Component
+public class TokenUsageAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private static final String TENANT_PARAM = "agent.metrics.tenant";
+    private static final String USE_CASE_PARAM = "agent.metrics.use-case";
+
+    private final AgentMetrics metrics;
+
+    public TokenUsageAdvisor(AgentMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Tham số advisor cho một lời gọi ChatClient: chatClient.prompt(...).advisors(TokenUsageAdvisor.params(...)).
+     */
+    public static Consumer<ChatClient.AdvisorSpec> params(String useCase, String tenantId) {
+        return advisor -> {
+            advisor.param(USE_CASE_PARAM, useCase);
+            if (tenantId != null) {
+                advisor.param(TENANT_PARAM, tenantId);
+            }
+        };
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        ChatClientResponse response = chain.nextCall(request);
+        record(request, usageOf(response));
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        AtomicReference<Usage> last = new AtomicReference<>();
+        return chain.nextStream(request)
+                .doOnNext(response -> {
+                    Usage usage = usageOf(response);
+                    if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0) {
+                        last.set(usage);
+                    }
+                })
+                .doOnComplete(() -> record(request, last.get()));
+    }
+
+    @Override
+    public String getName() {
+        return "tokenUsageAdvisor";
+    }
+
+    /**
+     * Ngay trước lời gọi model, sau các advisor khác.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1000;
+    }
+
+    private void record(ChatClientRequest request, Usage usage) {
+        metrics.recordTokens((String) request.context().get(USE_CASE_PARAM),
+                (String) request.context().get(TENANT_PARAM), usage);
+    }
+
+    private static Usage usageOf(ChatClientResponse response) {
+        if (response == null || response.chatResponse() == null || response.chatResponse().getMetadata() == null) {
+            return null;
+        }
+        return response.chatResponse().getMetadata().getUsage();
+    }
+}
\ No newline at end of file
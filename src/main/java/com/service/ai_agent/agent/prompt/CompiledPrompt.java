@@ -0,0 +1,101 @@
+package com.service.ai_agent.agent.prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Template đã được parse sẵn thành các đoạn văn bản cố định xen kẽ biến {name}.
+ * Render chỉ là nối chuỗi vào một StringBuilder đã biết trước kích thước, không parse lại template.
+ *
+ * Phần văn bản trước biến đầu tiên là prefix tĩnh: giống hệt nhau (từng byte) ở mọi lần render,
+ * nên provider có thể cache phần đó của prompt. Vì vậy các biến thay đổi nhiều nhất nên đặt ở cuối template.
+ */
+public class CompiledPrompt {
+
+    private static final Pattern VARIABLE = Pattern.compile("\\{([a-zA-Z_][a-zA-Z0-9_]*)}");
+
+    private final String name;
+    // literals.length == variables.length + 1: literal[0] var[0] literal[1] var[1] ... literal[n]
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalChars;
+
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder renderedChars = new LongAdder();
+
+    /**
+     * @param staticPrefixChars Độ dài prefix tĩnh (trước biến đầu tiên).
+     * @param prefixReuseRatio Tỉ lệ ký tự của các prompt đã render nằm trong prefix tĩnh.
+     */
+    public record Stats(long renders, double meanRenderMicros, int staticPrefixChars, double meanRenderedChars,
+                        double prefixReuseRatio) {}
+
+    CompiledPrompt(String name, String template) {
+        this.name = name;
+        List<String> literalParts = new ArrayList<>();
+        List<String> variableNames = new ArrayList<>();
+        Matcher matcher = VARIABLE.matcher(template);
+        int position = 0;
+        while (matcher.find()) {
+            literalParts.add(template.substring(position, matcher.start()));
+            variableNames.add(matcher.group(1));
+            position = matcher.end();
+        }
+        literalParts.add(template.substring(position));
+        this.literals = literalParts.toArray(new String[0]);
+        this.variables = variableNames.toArray(new String[0]);
+        this.literalChars = literalParts.stream().mapToInt(String::length).sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Toàn bộ phần văn bản cố định của template (không gồm biến), ví dụ để đếm token một lần.
+     */
+    public String getStaticText() {
+        return String.join("", literals);
+    }
+
+    public String render(Map<String, String> values) {
+        long start = System.nanoTime();
+        String[] resolved = new String[variables.length];
+        int length = literalChars;
+        for (int i = 0; i < variables.length; i++) {
+            String value = values.get(variables[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for '" + variables[i] + "' in prompt " + name);
+            }
+            resolved[i] = value;
+            length += value.length();
+        }
+
+        StringBuilder rendered = new StringBuilder(length);
+        for (int i = 0; i < variables.length; i++) {
+            rendered.append(literals[i]).append(resolved[i]);
+        }
+        rendered.append(literals[variables.length]);
+
+        renders.increment();
+        renderedChars.add(length);
+        renderNanos.add(System.nanoTime() - start);
+        return rendered.toString();
+    }
+
+    public Stats getStats() {
+        long count = renders.sum();
+        long chars = renderedChars.sum();
+        int prefix = literals[0].length();
+        return new Stats(count,
+                count > 0 ? renderNanos.sum() / 1_000.0 / count : 0,
+                prefix,
+                count > 0 ? (double) chars / count : 0,
+                chars > 0 ? (double) prefix * count / chars : 0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.service.ai_agent.agent.prompt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dựng các phần động của prompt (memory, catalog, input...) trong một ngân sách token.
+ * Mỗi phần được giới hạn theo agent.context.section-max-tokens trước; nếu tổng prompt vẫn vượt
+ * agent.context.max-prompt-tokens thì các phần có priority thấp nhất bị cắt trước (có thể bị bỏ hẳn).
+ * Phần bắt buộc (input của người dùng) không bao giờ bị cắt.
+ *
+ * Số token được đếm cục bộ (TokenCounter) và ghi lại theo từng use case.
+ */
+@Component
+@Slf4j
+public class ContextAssembler {
+
+    /**
+     * Cách cắt một phần khi vượt ngân sách, theo từng dòng.
+     */
+    public enum Trim {
+        // Bắt buộc, không cắt
+        NONE,
+        // Giữ các dòng đầu (ví dụ catalog: mục đầu danh sách)
+        KEEP_HEAD,
+        // Giữ các dòng cuối (ví dụ history: các message mới nhất)
+        KEEP_TAIL
+    }
+
+    /**
+     * @param priority Càng thấp càng bị cắt trước.
+     */
+    public record Section(String name, String text, int priority, Trim trim) {
+
+        public static Section required(String name, String text) {
+            return new Section(name, text, Integer.MAX_VALUE, Trim.NONE);
+        }
+
+        public static Section keepHead(String name, String text, int priority) {
+            return new Section(name, text, priority, Trim.KEEP_HEAD);
+        }
+
+        public static Section keepTail(String name, String text, int priority) {
+            return new Section(name, text, priority, Trim.KEEP_TAIL);
+        }
+    }
+
+    /**
+     * Kết quả dựng context: text (đã cắt) và số token của từng phần.
+     * @param fixedTokens Token của phần tĩnh trong template và overhead của các message.
+     * @param droppedTokens Số token đã bị cắt bỏ để vừa ngân sách.
+     */
+    public record Assembly(Map<String, String> texts, Map<String, Integer> sectionTokens, int fixedTokens,
+                           int totalTokens, int droppedTokens) {
+
+        public String text(String section) {
+            return texts.getOrDefault(section, "");
+        }
+    }
+
+    public record TokenStats(long requests, double meanPromptTokens, long maxPromptTokens, long trimmedRequests,
+                             long droppedTokens, Map<String, Double> meanSectionTokens) {}
+
+    private final TokenCounter tokenCounter;
+    private final ContextBudgetProperties budget;
+
+    // Số token phần tĩnh của từng template, chỉ đếm một lần
+    private final Map<String, Integer> templateTokens = new ConcurrentHashMap<>();
+    private final Map<String, UseCaseStats> stats = new ConcurrentHashMap<>();
+
+    public ContextAssembler(TokenCounter tokenCounter, ContextBudgetProperties budget) {
+        this.tokenCounter = tokenCounter;
+        this.budget = budget;
+    }
+
+    /**
+     * @param useCase Tên dùng cho metrics (ví dụ "orchestration", "consulting").
+     * @param template Template chứa các phần này; phần tĩnh của nó luôn được tính vào ngân sách.
+     * @param messages Số message của prompt (system, user...), mỗi message có overhead riêng.
+     */
+    public Assembly assemble(String useCase, CompiledPrompt template, int messages, List<Section> sections) {
+        int fixedTokens = templateTokens.computeIfAbsent(template.getName(),
+                name -> tokenCounter.count(template.getStaticText()))
+                + messages * TokenCounter.TOKENS_PER_MESSAGE + TokenCounter.TOKENS_PER_REPLY;
+
+        Map<String, String> texts = new LinkedHashMap<>();
+        Map<String, Integer> tokens = new LinkedHashMap<>();
+        int originalTokens = fixedTokens;
+        for (Section section : sections) {
+            String text = section.text() != null ? section.text() : "";
+            int count = tokenCounter.count(text);
+            originalTokens += count;
+            // Giới hạn riêng của từng phần
+            int cap = budget.sectionMaxTokens(section.name());
+            if (section.trim() != Trim.NONE && count > cap) {
+                text = trim(text, section.trim(), cap);
+                count = tokenCounter.count(text);
+            }
+            texts.put(section.name(), text);
+            tokens.put(section.name(), count);
+        }
+
+        // Vượt tổng ngân sách: cắt từ phần có priority thấp nhất
+        int total = fixedTokens + tokens.values().stream().mapToInt(Integer::intValue).sum();
+        List<Section> byPriority = new ArrayList<>(sections);
+        byPriority.sort(Comparator.comparingInt(Section::priority));
+        for (Section section : byPriority) {
+            if (total <= budget.getMaxPromptTokens()) {
+                break;
+            }
+            if (section.trim() == Trim.NONE) {
+                continue;
+            }
+            int current = tokens.get(section.name());
+            int target = Math.max(0, current - (total - budget.getMaxPromptTokens()));
+            String text = trim(texts.get(section.name()), section.trim(), target);
+            int count = tokenCounter.count(text);
+            texts.put(section.name(), text);
+            tokens.put(section.name(), count);
+            total += count - current;
+        }
+
+        Assembly assembly = new Assembly(texts, tokens, fixedTokens, total, Math.max(0, originalTokens - total));
+        stats.computeIfAbsent(useCase, key -> new UseCaseStats()).record(assembly);
+        if (assembly.droppedTokens() > 0) {
+            log.debug("Context for {} trimmed to {} tokens ({} dropped): {}",
+                    useCase, total, assembly.droppedTokens(), tokens);
+        }
+        return assembly;
+    }
+
+    public Map<String, TokenStats> getStats() {
+        Map<String, TokenStats> snapshot = new LinkedHashMap<>();
+        stats.forEach((useCase, useCaseStats) -> snapshot.put(useCase, useCaseStats.snapshot()));
+        return snapshot;
+    }
+
+    private String trim(String text, Trim trim, int maxTokens) {
+        if (maxTokens <= 0 || text.isEmpty()) {
+            return "";
+        }
+        String[] lines = text.split("\n");
+        List<String> kept = new ArrayList<>();
+        int used = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String line = trim == Trim.KEEP_TAIL ? lines[lines.length - 1 - i] : lines[i];
+            // +1 cho ký tự xuống dòng
+            int lineTokens = tokenCounter.count(line) + 1;
+            if (used + lineTokens > maxTokens) {
+                // Dòng đầu tiên đã vượt ngân sách: giữ một phần của dòng đó thay vì bỏ trống,
+                // phần cuối nếu section giữ đuôi
+                if (kept.isEmpty()) {
+                    kept.add(trim == Trim.KEEP_TAIL
+                            ? tokenCounter.truncateTail(line, maxTokens)
+                            : tokenCounter.truncate(line, maxTokens));
+                }
+                break;
+            }
+            kept.add(line);
+            used += lineTokens;
+        }
+        if (trim == Trim.KEEP_TAIL) {
+            Collections.reverse(kept);
+        }
+        return String.join("\n", kept);
+    }
+
+    private static class UseCaseStats {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAccumulator maxPromptTokens = new LongAccumulator(Math::max, 0);
+        private final LongAdder trimmedRequests = new LongAdder();
+        private final LongAdder droppedTokens = new LongAdder();
+        private final Map<String, LongAdder> sectionTokens = new ConcurrentHashMap<>();
+
+        void record(Assembly assembly) {
+            requests.increment();
+            promptTokens.add(assembly.totalTokens());
+            maxPromptTokens.accumulate(assembly.totalTokens());
+            if (assembly.droppedTokens() > 0) {
+                trimmedRequests.increment();
+                droppedTokens.add(assembly.droppedTokens());
+            }
+            sectionTokens.computeIfAbsent("fixed", key -> new LongAdder()).add(assembly.fixedTokens());
+            assembly.sectionTokens().forEach((section, count) ->
+                    sectionTokens.computeIfAbsent(section, key -> new LongAdder()).add(count));
+        }
+
+        TokenStats snapshot() {
+            long count = requests.sum();
+            Map<String, Double> meanSections = new LinkedHashMap<>();
+            sectionTokens.forEach((section, total) -> meanSections.put(section, count > 0 ? (double) total.sum() / count : 0));
+            return new TokenStats(count, count > 0 ? (double) promptTokens.sum() / count : 0, maxPromptTokens.get(),
+                    trimmedRequests.sum(), droppedTokens.sum(), meanSections);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.service.ai_agent.agent.prompt;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ngân sách token cho prompt gửi tới model: tổng số token tối đa của prompt và giới hạn riêng
+ * cho từng phần (memory, catalog...), ví dụ agent.context.section-max-tokens.memory=3000.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.context")
+public class ContextBudgetProperties {
+
+    private int maxPromptTokens = 8000;
+
+    private Map<String, Integer> sectionMaxTokens = new HashMap<>();
+
+    public int sectionMaxTokens(String section) {
+        return sectionMaxTokens.getOrDefault(section, Integer.MAX_VALUE);
+    }
+}
\ No newline at end of file
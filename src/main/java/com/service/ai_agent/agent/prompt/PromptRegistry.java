@@ -0,0 +1,35 @@
+package com.service.ai_agent.agent.prompt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nơi đăng ký các prompt template của agent. Mỗi template được parse một lần khi bean sở hữu nó khởi tạo,
+ * sau đó mỗi request chỉ render lại (xem CompiledPrompt). Registry giữ lại các template để báo cáo
+ * thời gian render và tỉ lệ prefix tĩnh được dùng lại.
+ */
+@Component
+@Slf4j
+public class PromptRegistry {
+
+    private final Map<String, CompiledPrompt> prompts = new ConcurrentHashMap<>();
+
+    public CompiledPrompt compile(String name, String template) {
+        CompiledPrompt compiled = new CompiledPrompt(name, template);
+        if (prompts.putIfAbsent(name, compiled) != null) {
+            throw new IllegalStateException("Prompt " + name + " is already registered");
+        }
+        log.debug("Compiled prompt {} (static prefix: {} chars)", name, compiled.getStats().staticPrefixChars());
+        return compiled;
+    }
+
+    public Map<String, CompiledPrompt.Stats> getStats() {
+        Map<String, CompiledPrompt.Stats> stats = new LinkedHashMap<>();
+        prompts.forEach((name, prompt) -> stats.put(name, prompt.getStats()));
+        return stats;
+    }
+}
\ No newline at end of file
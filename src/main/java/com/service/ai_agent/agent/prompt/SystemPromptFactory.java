@@ -3,22 +3,22 @@ package com.service.ai_agent.agent.prompt;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
+import java.util.Map;
 
 @Component
 public class SystemPromptFactory {
 
-    public String createSystemPrompt(String context) {
-        // Đây là nơi thể hiện Chain Workflow
-        final String CONSULTING_WORKFLOW_PROMPT = """
-        To provide a consultation (e.g., 'which template should I choose?'), you MUST follow this chain of actions:
-        1. FIRST, call the 'getAvailableTemplatesTool' to get the full list of website templates.
-        2. THEN, analyze the result from the tool against the user's request.
-        3. FINALLY, present the most suitable options to the user.
-        """;
-        
-        return """
+    // Đây là nơi thể hiện Chain Workflow
+    private static final String CONSULTING_WORKFLOW_PROMPT = """
+            To provide a consultation (e.g., 'which template should I choose?'), you MUST follow this chain of actions:
+            1. FIRST, call the 'getAvailableTemplatesTool' to get the full list of website templates.
+            2. THEN, analyze the result from the tool against the user's request.
+            3. FINALLY, present the most suitable options to the user.
+            """;
+
+    // Phần tĩnh đứng trước, ngày hiện tại và context của session ở cuối để prefix giống hệt nhau giữa các request
+    private static final String SYSTEM_PROMPT_TEMPLATE = """
             You are 'SiteBuilder AI', a virtual assistant for a website building platform, developed by nguyentrungtung.
-            Your current date is %s.
             You are friendly, professional, and helpful.
 
             Your capabilities are defined by the tools you have access to.
@@ -26,12 +26,28 @@ public class SystemPromptFactory {
 
             **IMPORTANT WORKFLOWS:**
             %s
-            
             Always use the available tools to get the most up-to-date information before answering.
-            
+
+            Your current date is {date}.
+
             Current conversation context is provided below.
             ---
-            %s
-            """.formatted(LocalDate.now(), CONSULTING_WORKFLOW_PROMPT, context);
+            {context}
+            """.formatted(CONSULTING_WORKFLOW_PROMPT);
+
+    private final CompiledPrompt systemPrompt;
+
+    public SystemPromptFactory(PromptRegistry promptRegistry) {
+        this.systemPrompt = promptRegistry.compile("system.assistant", SYSTEM_PROMPT_TEMPLATE);
+    }
+
+    public CompiledPrompt getTemplate() {
+        return systemPrompt;
+    }
+
+    public String createSystemPrompt(String context) {
+        return systemPrompt.render(Map.of(
+                "date", LocalDate.now().toString(),
+                "context", context != null ? context : ""));
     }
 }
\ No newline at end of file
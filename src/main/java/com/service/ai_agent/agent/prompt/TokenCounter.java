@@ -0,0 +1,73 @@
+package com.service.ai_agent.agent.prompt;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đếm token cục bộ bằng tokenizer BPE của model chat đang cấu hình (gpt-4o: o200k_base),
+ * không cần gọi OpenAI. Model không có trong registry của jtokkit thì dùng o200k_base.
+ */
+@Component
+@Slf4j
+public class TokenCounter {
+
+    // Mỗi message trong chat completion tốn thêm vài token cho role và phân cách
+    public static final int TOKENS_PER_MESSAGE = 3;
+    // Token mồi cho câu trả lời của assistant
+    public static final int TOKENS_PER_REPLY = 3;
+
+    private final Encoding encoding;
+
+    public TokenCounter(@Value("${spring.ai.openai.chat.options.model:gpt-4o}") String model) {
+        this.encoding = Encodings.newLazyEncodingRegistry().getEncodingForModel(model)
+                .orElseGet(() -> Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.O200K_BASE));
+        log.info("Token counter for model {} uses encoding {}", model, encoding.getName());
+    }
+
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokensOrdinary(text);
+    }
+
+    /**
+     * Cắt text để còn tối đa maxTokens token, giữ phần đầu.
+     */
+    public String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        EncodingResult result = encoding.encodeOrdinary(text, maxTokens);
+        return result.isTruncated() ? encoding.decode(result.getTokens()) : text;
+    }
+
+    /**
+     * Cắt text để còn tối đa maxTokens token, giữ phần cuối.
+     */
+    public String truncateTail(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        IntArrayList tokens = encoding.encodeOrdinary(text);
+        if (tokens.size() <= maxTokens) {
+            return text;
+        }
+        // Token đầu của phần cuối có thể chỉ là nửa sau của một ký tự UTF-8: bỏ thêm token cho đến khi
+        // phần giải mã được đúng là đuôi của text
+        for (int start = tokens.size() - maxTokens; start < tokens.size(); start++) {
+            IntArrayList tail = new IntArrayList(tokens.size() - start);
+            for (int i = start; i < tokens.size(); i++) {
+                tail.add(tokens.get(i));
+            }
+            String decoded = encoding.decode(tail);
+            if (text.endsWith(decoded)) {
+                return decoded;
+            }
+        }
+        return "";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.service.ai_agent.agent.tools;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ToolCallingManager thay cho bản mặc định của Spring AI: khi LLM yêu cầu nhiều tool trong cùng một lượt
+ * (ví dụ getPricingPlansTool và getAvailableTemplatesTool), các tool chạy song song trên agentTaskExecutor,
+ * thời gian của lượt bằng tool chậm nhất thay vì tổng các tool.
+ *
+ * Mỗi tool có timeout riêng (ToolProperties); tool lỗi hoặc quá thời gian trả về thông báo lỗi cho LLM
+ * qua ToolExecutionExceptionProcessor, các tool khác trong lượt vẫn có kết quả.
+ *
+ * Timeout chỉ ngừng chờ, không dừng được tool đang chạy. Với tool không idempotent (createWebsiteTool),
+ * LLM được báo là kết quả chưa xác định và không được gọi lại, thay vì báo lỗi rồi thử lại và tạo trùng.
+ */
+@Component
+@Slf4j
+public class ConcurrentToolCallingManager implements ToolCallingManager {
+
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ToolExecutionExceptionProcessor exceptionProcessor;
+    private final AsyncTaskExecutor executor;
+    private final ToolProperties toolProperties;
+    private final ToolMetrics toolMetrics;
+    private final ToolRegistry toolRegistry;
+    // Chỉ dùng để resolve tool definition, không dùng để thực thi
+    private final ToolCallingManager definitionResolver;
+
+    private record PendingCall(AssistantMessage.ToolCall toolCall, ToolCallback callback, Duration timeout,
+                               CompletableFuture<String> future) {}
+
+    public ConcurrentToolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                        ToolExecutionExceptionProcessor exceptionProcessor,
+                                        @Qualifier("agentTaskExecutor") AsyncTaskExecutor executor,
+                                        ToolProperties toolProperties,
+                                        ToolMetrics toolMetrics,
+                                        ToolRegistry toolRegistry) {
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.exceptionProcessor = exceptionProcessor;
+        this.executor = executor;
+        this.toolProperties = toolProperties;
+        this.toolMetrics = toolMetrics;
+        this.toolRegistry = toolRegistry;
+        this.definitionResolver = DefaultToolCallingManager.builder()
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(exceptionProcessor)
+                .build();
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return definitionResolver.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+
+        ToolCallingChatOptions options = prompt.getOptions() instanceof ToolCallingChatOptions toolOptions
+                ? toolOptions : null;
+
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        ToolContext toolContext = buildToolContext(options, conversationHistory);
+
+        // Fork: khởi chạy tất cả tool trong lượt trước khi chờ tool nào
+        long batchStart = System.nanoTime();
+        LongAdder sequentialMillis = new LongAdder();
+        List<PendingCall> pendingCalls = new ArrayList<>();
+        for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+            ToolCallback callback = resolveCallback(toolCall.name(), options);
+            ToolCallRecorder.record(options != null ? options.getToolContext() : null, toolCall.name());
+            Duration timeout = toolProperties.timeoutFor(toolCall.name());
+            long start = System.nanoTime();
+            CompletableFuture<String> future = CompletableFuture
+                    .supplyAsync(() -> callback.call(toolCall.arguments(), toolContext), executor)
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((result, error) -> {
+                        long millis = (System.nanoTime() - start) / 1_000_000;
+                        sequentialMillis.add(millis);
+                        // Latency của chính tool đã được timer agent.tool.calls ghi (TimedTool), ở đây chỉ đếm timeout
+                        if (isTimeout(error)) {
+                            toolMetrics.recordTimeout(toolCall.name());
+                        }
+                    });
+            pendingCalls.add(new PendingCall(toolCall, callback, timeout, future));
+        }
+
+        // Join theo thứ tự LLM yêu cầu để giữ nguyên thứ tự tool response
+        List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>(pendingCalls.size());
+        boolean returnDirect = true;
+        for (PendingCall call : pendingCalls) {
+            String result = join(call);
+            toolResponses.add(new ToolResponseMessage.ToolResponse(call.toolCall().id(), call.toolCall().name(), result));
+            returnDirect &= call.callback().getToolMetadata().returnDirect();
+        }
+        toolMetrics.recordBatch(pendingCalls.size(), sequentialMillis.sum(), (System.nanoTime() - batchStart) / 1_000_000);
+
+        conversationHistory.add(new ToolResponseMessage(toolResponses, Map.of()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    private String join(PendingCall call) {
+        String toolName = call.toolCall().name();
+        ToolDefinition definition = call.callback().getToolDefinition();
+        try {
+            return call.future().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ToolExecutionException(definition, e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                log.warn("Tool {} timed out after {} ms", toolName, call.timeout().toMillis());
+                if (!toolRegistry.isIdempotent(toolName)) {
+                    return "Tool " + toolName + " is still running after " + call.timeout().toMillis()
+                            + " ms and its outcome is unknown. Do NOT call it again: tell the user the request"
+                            + " is being processed and that they should check the result shortly.";
+                }
+                return exceptionProcessor.process(new ToolExecutionException(definition,
+                        new TimeoutException("Tool " + toolName + " timed out after " + call.timeout().toMillis() + " ms")));
+            }
+            log.warn("Tool {} failed: {}", toolName, cause.getMessage());
+            return exceptionProcessor.process(cause instanceof ToolExecutionException toolException
+                    ? toolException : new ToolExecutionException(definition, cause));
+        }
+    }
+
+    private ToolCallback resolveCallback(String toolName, ToolCallingChatOptions options) {
+        if (options != null && options.getToolCallbacks() != null) {
+            for (ToolCallback callback : options.getToolCallbacks()) {
+                if (callback.getToolDefinition().name().equals(toolName)) {
+                    return callback;
+                }
+            }
+        }
+        ToolCallback callback = toolCallbackResolver.resolve(toolName);
+        if (callback == null) {
+            throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+        }
+        return callback;
+    }
+
+    private static ToolContext buildToolContext(ToolCallingChatOptions options, List<Message> conversationHistory) {
+        if (options == null || options.getToolContext() == null || options.getToolContext().isEmpty()) {
+            return null;
+        }
+        Map<String, Object> context = new HashMap<>(options.getToolContext());
+        context.put(ToolContext.TOOL_CALL_HISTORY, List.copyOf(conversationHistory));
+        return new ToolContext(context);
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof TimeoutException;
+    }
+}
\ No newline at end of file
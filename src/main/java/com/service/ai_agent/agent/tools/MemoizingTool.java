@@ -0,0 +1,65 @@
+package com.service.ai_agent.agent.tools;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+
+/**
+ * Bọc một tool idempotent: kết quả được cache theo request record trong TTL mà tool khai báo.
+ * Các lời gọi đồng thời với cùng request chỉ chạy tool một lần (single-flight), các lời gọi còn lại
+ * chờ và dùng chung kết quả. Tool lỗi hoặc trả về null thì không cache.
+ */
+public class MemoizingTool<T, R> implements Tool<T, R> {
+
+    private static final long MAX_ENTRIES = 1_000;
+
+    private final Tool<T, R> delegate;
+    private final Cache<T, R> results;
+
+    public record Stats(long size, long hitCount, long missCount, double hitRate, long loadFailureCount) {}
+
+    MemoizingTool(Tool<T, R> delegate) {
+        this.delegate = delegate;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(delegate.getResultCacheTtl())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public R apply(T request) {
+        if (request == null) {
+            return delegate.apply(null);
+        }
+        // Caffeine chỉ chạy loader một lần cho mỗi key, các thread khác cùng key chờ kết quả đó
+        return results.get(request, delegate);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public Duration getResultCacheTtl() {
+        return delegate.getResultCacheTtl();
+    }
+
+    void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    Stats getStats() {
+        CacheStats stats = results.stats();
+        return new Stats(results.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.loadFailureCount());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.service.ai_agent.agent.tools;
+
+import com.service.ai_agent.agent.metrics.AgentMetrics;
+
+import java.time.Duration;
+
+/**
+ * Bọc tool để đo mọi lần gọi qua ToolRegistry, cả khi LLM gọi tool lẫn khi workflow gọi trực tiếp.
+ * Bọc ngoài MemoizingTool, nên lần gọi trả từ cache kết quả cũng được đếm.
+ */
+class TimedTool<T, R> implements Tool<T, R> {
+
+    private final Tool<T, R> delegate;
+    private final AgentMetrics metrics;
+
+    TimedTool(Tool<T, R> delegate, AgentMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public R apply(T request) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            R response = delegate.apply(request);
+            outcome = "success";
+            return response;
+        } finally {
+            metrics.recordTool(delegate.getName(), System.nanoTime() - start, outcome);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public Duration getResultCacheTtl() {
+        return delegate.getResultCacheTtl();
+    }
+}
\ No newline at end of file
@@ -2,5 +2,16 @@ package com.service.ai_agent.agent.tools;
 
 import com.service.ai_agent.agent.workflow.orchestrator.Worker;
 
+import java.time.Duration;
+
 public interface Tool<T, R> extends Worker<T, R> {
+
+    /**
+     * Thời gian ToolRegistry được phép dùng lại kết quả cho cùng một request.
+     * Mặc định Duration.ZERO: không cache. Chỉ override cho tool idempotent
+     * (cùng request luôn cho cùng kết quả và không có side effect).
+     */
+    default Duration getResultCacheTtl() {
+        return Duration.ZERO;
+    }
 }
\ No newline at end of file
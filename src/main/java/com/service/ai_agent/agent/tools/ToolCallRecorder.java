@@ -0,0 +1,31 @@
+package com.service.ai_agent.agent.tools;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ghi lại các tool mà LLM đã gọi trong một lời gọi ChatClient. Nơi gọi truyền recorder qua tool context
+ * (chatClient.prompt(...).toolContext(recorder.toolContext())), ConcurrentToolCallingManager ghi tên tool
+ * trước khi thực thi, kể cả khi tool lỗi hoặc quá thời gian.
+ */
+public class ToolCallRecorder {
+
+    static final String CONTEXT_KEY = "agent.tool-call-recorder";
+
+    private final Set<String> calledTools = ConcurrentHashMap.newKeySet();
+
+    public Map<String, Object> toolContext() {
+        return Map.of(CONTEXT_KEY, this);
+    }
+
+    public Set<String> getCalledTools() {
+        return Set.copyOf(calledTools);
+    }
+
+    static void record(Map<String, Object> toolContext, String toolName) {
+        if (toolContext != null && toolContext.get(CONTEXT_KEY) instanceof ToolCallRecorder recorder) {
+            recorder.calledTools.add(toolName);
+        }
+    }
+}
\ No newline at end of file
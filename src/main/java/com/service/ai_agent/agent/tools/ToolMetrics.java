@@ -0,0 +1,97 @@
+package com.service.ai_agent.agent.tools;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics cho các lần LLM gọi tool: số lần quá thời gian theo tool và thời gian tiết kiệm được
+ * khi nhiều tool trong cùng một lượt chạy song song.
+ *
+ * Latency của từng lần gọi chỉ được đo một lần, bởi timer agent.tool.calls (TimedTool);
+ * getToolStats() đọc lại từ timer đó thay vì giữ histogram riêng.
+ */
+@Component
+public class ToolMetrics {
+
+    private static final String CALLS = "agent.tool.calls";
+    private static final String TIMEOUTS = "agent.tool.timeouts";
+
+    private final MeterRegistry registry;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder parallelBatches = new LongAdder();
+    private final LongAdder batchWallMillis = new LongAdder();
+    private final LongAdder batchSequentialMillis = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param maxMillis Giá trị lớn nhất trong cửa sổ gần đây của timer (không phải từ lúc khởi động).
+     */
+    public record ToolStats(long count, long errors, long timeouts, double meanMillis, double maxMillis) {}
+
+    /**
+     * @param sequentialMillis Tổng latency của các tool trong lượt, tức thời gian nếu chạy tuần tự.
+     * @param wallMillis Thời gian thực tế của cả lượt khi chạy song song.
+     */
+    public record BatchStats(long batches, long parallelBatches, long maxBatchSize,
+                             long sequentialMillis, long wallMillis, long savedMillis) {}
+
+    public ToolMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Lượt chờ tool đã hết timeout; tool vẫn chạy tiếp và latency thực của nó được timer ghi khi xong.
+     */
+    public void recordTimeout(String toolName) {
+        Counter.builder(TIMEOUTS)
+                .description("Tool calls the LLM stopped waiting for")
+                .tag("tool", toolName)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordBatch(int size, long sequentialMillis, long wallMillis) {
+        batches.increment();
+        if (size > 1) {
+            parallelBatches.increment();
+        }
+        maxBatchSize.accumulate(size);
+        batchSequentialMillis.add(sequentialMillis);
+        batchWallMillis.add(wallMillis);
+    }
+
+    public Map<String, ToolStats> getToolStats() {
+        Map<String, ToolStats> stats = new TreeMap<>();
+        for (Timer timer : registry.find(CALLS).timers()) {
+            String tool = timer.getId().getTag("tool");
+            boolean error = "error".equals(timer.getId().getTag("outcome"));
+            ToolStats current = stats.getOrDefault(tool, new ToolStats(0, 0, timeouts(tool), 0, 0));
+            long count = current.count() + timer.count();
+            double totalMillis = current.meanMillis() * current.count() + timer.totalTime(TimeUnit.MILLISECONDS);
+            stats.put(tool, new ToolStats(count, current.errors() + (error ? timer.count() : 0), current.timeouts(),
+                    count > 0 ? totalMillis / count : 0, Math.max(current.maxMillis(), timer.max(TimeUnit.MILLISECONDS))));
+        }
+        return stats;
+    }
+
+    public BatchStats getBatchStats() {
+        long sequential = batchSequentialMillis.sum();
+        long wall = batchWallMillis.sum();
+        return new BatchStats(batches.sum(), parallelBatches.sum(), maxBatchSize.get(), sequential, wall,
+                Math.max(0, sequential - wall));
+    }
+
+    private long timeouts(String tool) {
+        Counter counter = registry.find(TIMEOUTS).tag("tool", tool).counter();
+        return counter != null ? (long) counter.count() : 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.service.ai_agent.agent.tools;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình thực thi tool khi LLM gọi: timeout mặc định và override theo tên tool,
+ * ví dụ agent.tools.timeouts.createWebsiteTool=PT30S.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.tools")
+public class ToolProperties {
+
+    private Duration defaultTimeout = Duration.ofSeconds(10);
+
+    private Map<String, Duration> timeouts = new HashMap<>();
+
+    public Duration timeoutFor(String toolName) {
+        return timeouts.getOrDefault(toolName, defaultTimeout);
+    }
+}
\ No newline at end of file
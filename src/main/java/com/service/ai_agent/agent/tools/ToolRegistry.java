@@ -1,20 +1,37 @@
 package com.service.ai_agent.agent.tools;
 
+import com.service.ai_agent.agent.metrics.AgentMetrics;
+import com.service.ai_agent.infrastructure.laravel_api.CatalogChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ResolvableType;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 public class ToolRegistry {
 
     private final Map<String, Function> tools;
+    private final List<ToolCallback> toolCallbacks;
+    // Các tool idempotent đã được bọc cache kết quả, theo tên tool
+    private final Map<String, MemoizingTool<?, ?>> memoizedTools = new LinkedHashMap<>();
 
-    public ToolRegistry(ApplicationContext context) {
-        this.tools = context.getBeansOfType(Tool.class).values().stream()
-                .collect(Collectors.toMap(Tool::getName, tool -> tool));
+    public ToolRegistry(ApplicationContext context, AgentMetrics metrics) {
+        List<Tool> toolBeans = List.copyOf(context.getBeansOfType(Tool.class).values());
+        this.tools = toolBeans.stream()
+                .collect(Collectors.toMap(Tool::getName, tool -> wrap((Tool<?, ?>) tool, metrics)));
+        this.toolCallbacks = toolBeans.stream()
+                .map(tool -> toToolCallback(tool, (Tool) tools.get(tool.getName())))
+                .toList();
     }
 
     public Function getTool(String name) {
@@ -24,4 +41,77 @@ public class ToolRegistry {
     public Map<String, Function> getTools() {
         return tools;
     }
+
+    /**
+     * Bản tool mà registry thực sự gọi (đã bọc cache nếu tool idempotent),
+     * cho các workflow gọi tool trực tiếp thay vì qua LLM.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, R> Tool<T, R> resolve(Tool<T, R> tool) {
+        return (Tool<T, R>) tools.getOrDefault(tool.getName(), tool);
+    }
+
+    /**
+     * Tool idempotent (có khai báo thời gian cache kết quả): gọi lại không gây thêm side effect.
+     */
+    public boolean isIdempotent(String toolName) {
+        return memoizedTools.containsKey(toolName);
+    }
+
+    /**
+     * Các tool dưới dạng function callback để đăng ký với ChatClient.
+     * JSON schema của input được sinh từ kiểu Request của từng tool.
+     */
+    public List<ToolCallback> getToolCallbacks() {
+        return toolCallbacks;
+    }
+
+    /**
+     * Thống kê cache kết quả của các tool idempotent, theo tên tool.
+     */
+    public Map<String, MemoizingTool.Stats> getResultCacheStats() {
+        Map<String, MemoizingTool.Stats> stats = new LinkedHashMap<>();
+        memoizedTools.forEach((name, tool) -> stats.put(name, tool.getStats()));
+        return stats;
+    }
+
+    /**
+     * Xóa kết quả đã cache của mọi tool, ví dụ khi dữ liệu nguồn vừa thay đổi.
+     */
+    public void invalidateResultCaches() {
+        memoizedTools.values().forEach(MemoizingTool::invalidateAll);
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        invalidateResultCaches();
+    }
+
+    private <T, R> Tool<T, R> wrap(Tool<T, R> tool, AgentMetrics metrics) {
+        // Đo ngoài cùng: mọi lần gọi qua registry đều có trong agent.tool.calls, kể cả khi trả từ cache
+        return new TimedTool<>(memoizeIfIdempotent(tool), metrics);
+    }
+
+    private <T, R> Tool<T, R> memoizeIfIdempotent(Tool<T, R> tool) {
+        if (!tool.getResultCacheTtl().isPositive()) {
+            return tool;
+        }
+        MemoizingTool<T, R> memoized = new MemoizingTool<>(tool);
+        memoizedTools.put(tool.getName(), memoized);
+        log.info("Tool {} results cached for {}", tool.getName(), tool.getResultCacheTtl());
+        return memoized;
+    }
+
+    /**
+     * @param tool Tool gốc, dùng để lấy kiểu Request.
+     * @param effective Tool thực sự được gọi (có thể đã được bọc cache).
+     */
+    @SuppressWarnings("unchecked")
+    private static ToolCallback toToolCallback(Tool tool, Tool effective) {
+        Class<?> inputType = ResolvableType.forClass(tool.getClass()).as(Tool.class).getGeneric(0).resolve(Object.class);
+        return FunctionToolCallback.builder(tool.getName(), (Function<Object, Object>) effective)
+                .description(tool.getDescription())
+                .inputType(inputType)
+                .build();
+    }
 }
\ No newline at end of file
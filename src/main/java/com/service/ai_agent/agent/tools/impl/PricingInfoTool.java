@@ -1,20 +1,23 @@
 package com.service.ai_agent.agent.tools.impl;
 
 import com.service.ai_agent.agent.tools.Tool;
-import com.service.ai_agent.infrastructure.laravel_api.LaravelApiClient;
+import com.service.ai_agent.infrastructure.laravel_api.LaravelCatalogCache;
 import com.service.ai_agent.infrastructure.laravel_api.dto.PricingPlanDTO;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class PricingInfoTool implements Tool<PricingInfoTool.Request, PricingInfoTool.Response> {
 
-    // Inject client API thật sự
-    private final LaravelApiClient laravelApiClient;
+    // Catalog được cache quanh LaravelApiClient (refresh-ahead, ETag, serve-stale)
+    private final LaravelCatalogCache catalogCache;
 
     @Override
     public String getName() {
@@ -26,6 +29,12 @@ public class PricingInfoTool implements Tool<PricingInfoTool.Request, PricingInf
         return "Lấy thông tin chi tiết về các gói dịch vụ và giá hiện tại của hệ thống. Dùng khi người dùng hỏi về giá, chi phí, hoặc các gói dịch vụ.";
     }
 
+    // Request rỗng, cùng kết quả cho mọi cuộc hội thoại: các lời gọi trong 30s dùng chung một kết quả
+    @Override
+    public Duration getResultCacheTtl() {
+        return Duration.ofSeconds(30);
+    }
+
     // Các record định nghĩa input/output cho Tool
     public record Request() {}
     public record PlanInfo(String planName, double price, String currency, List<String> features) {}
@@ -33,10 +42,10 @@ public class PricingInfoTool implements Tool<PricingInfoTool.Request, PricingInf
 
     @Override
     public Response apply(Request request) {
-        System.out.println("Executing tool: " + getName() + " by calling external API.");
+        log.debug("Executing tool {} from catalog cache", getName());
 
-        // Gọi API thật sự
-        List<PricingPlanDTO> dtoList = laravelApiClient.getPricingPlans();
+        // Lấy từ catalog cache, chỉ gọi API khi cần làm mới
+        List<PricingPlanDTO> dtoList = catalogCache.getPricingPlans();
 
         // Chuyển đổi từ DTO của lớp infrastructure sang record Response của Tool
         List<PlanInfo> planInfos = dtoList.stream()
@@ -7,6 +7,8 @@ import com.service.ai_agent.infrastructure.laravel_api.dto.WebsiteCreationRespon
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @RequiredArgsConstructor
 public class WebsiteCreationTool implements Tool<WebsiteCreationTool.Request, WebsiteCreationTool.Response> {
@@ -23,6 +25,12 @@ public class WebsiteCreationTool implements Tool<WebsiteCreationTool.Request, We
         return "Tạo một website mới cho người dùng. Sử dụng tool này khi người dùng yêu cầu 'tạo web', 'xây dựng trang web', 'làm cho tôi một web'. Tool này cần một mô tả về website và một mã giao diện (templateId) nếu người dùng cung cấp.";
     }
 
+    // Mỗi lần gọi tạo một website mới (có side effect), không bao giờ được cache kết quả
+    @Override
+    public Duration getResultCacheTtl() {
+        return Duration.ZERO;
+    }
+
     /**
      * Dữ liệu đầu vào cho tool, được LLM điền vào.
      * @param description Mô tả về website người dùng muốn (ví dụ: 'cửa hàng bán hoa', 'blog du lịch').
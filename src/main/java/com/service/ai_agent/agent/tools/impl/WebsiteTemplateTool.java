@@ -1,19 +1,22 @@
 package com.service.ai_agent.agent.tools.impl;
 
 import com.service.ai_agent.agent.tools.Tool;
-import com.service.ai_agent.infrastructure.laravel_api.LaravelApiClient;
+import com.service.ai_agent.infrastructure.laravel_api.LaravelCatalogCache;
 import com.service.ai_agent.infrastructure.laravel_api.dto.TemplateDTO;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class WebsiteTemplateTool implements Tool<WebsiteTemplateTool.Request, WebsiteTemplateTool.Response> {
 
-    private final LaravelApiClient laravelApiClient;
+    private final LaravelCatalogCache catalogCache;
 
     @Override
     public String getName() {
@@ -25,15 +28,21 @@ public class WebsiteTemplateTool implements Tool<WebsiteTemplateTool.Request, We
         return "Lấy danh sách tất cả các giao diện website có sẵn của hệ thống. Dùng khi người dùng muốn xem các mẫu giao diện.";
     }
 
+    // Request rỗng, cùng kết quả cho mọi cuộc hội thoại: các lời gọi trong 30s dùng chung một kết quả
+    @Override
+    public Duration getResultCacheTtl() {
+        return Duration.ofSeconds(30);
+    }
+
     public record Request() {}
     public record TemplateInfo(String id, String name, String description, String previewImageUrl) {}
     public record Response(List<TemplateInfo> templates) {}
 
     @Override
     public Response apply(Request request) {
-        System.out.println("Executing tool: " + getName() + " by calling external API.");
+        log.debug("Executing tool {} from catalog cache", getName());
 
-        List<TemplateDTO> dtoList = laravelApiClient.getAvailableTemplates();
+        List<TemplateDTO> dtoList = catalogCache.getTemplates();
 
         List<TemplateInfo> templateInfos = dtoList.stream()
                 .map(dto -> new TemplateInfo(dto.getId(), dto.getName(), dto.getDescription(), dto.getPreviewImageUrl()))
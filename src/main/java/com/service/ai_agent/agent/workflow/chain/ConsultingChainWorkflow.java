@@ -1,86 +1,182 @@
 package com.service.ai_agent.agent.workflow.chain;
 
+import com.service.ai_agent.agent.memory.AgentMemoryService;
+import com.service.ai_agent.agent.metrics.AgentMetrics;
+import com.service.ai_agent.agent.metrics.TokenUsageAdvisor;
+import com.service.ai_agent.agent.prompt.CompiledPrompt;
+import com.service.ai_agent.agent.prompt.ContextAssembler;
+import com.service.ai_agent.agent.prompt.PromptRegistry;
 import com.service.ai_agent.agent.request.AgentRequest;
 import com.service.ai_agent.agent.response.AgentResponse;
+import com.service.ai_agent.agent.tools.Tool;
+import com.service.ai_agent.agent.tools.ToolRegistry;
+import com.service.ai_agent.agent.tools.impl.PricingInfoTool;
 import com.service.ai_agent.agent.tools.impl.WebsiteTemplateTool;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service("consultingChainWorkflow")
-@RequiredArgsConstructor
+@Slf4j
 public class ConsultingChainWorkflow implements ChainWorkflow {
 
-    private final WebsiteTemplateTool getTemplatesTool;
+    // Lấy qua ToolRegistry để dùng chung cache kết quả với các lời gọi tool từ LLM
+    private final Tool<WebsiteTemplateTool.Request, WebsiteTemplateTool.Response> getTemplatesTool;
+    private final Tool<PricingInfoTool.Request, PricingInfoTool.Response> getPricingTool;
+    private final AgentMemoryService memoryService;
     // Việc inject này bây giờ đã hoạt động nhờ có AiClientConfig
     private final ChatClient chatClient;
+    private final ContextAssembler contextAssembler;
+    private final AgentMetrics metrics;
+
+    // Sắp xếp theo mức độ thay đổi: hướng dẫn tĩnh, catalog, hội thoại của session, cuối cùng là request
+    private static final String RECOMMENDATION_PROMPT_TEMPLATE = """
+            You are a helpful consultant. Based on the user's request and the list of available website templates, provide a helpful recommendation.
+            Your answer must be friendly and address the user directly.
+
+            Available Templates:
+            {templates}
+
+            Pricing Plans:
+            {plans}
+
+            Previous conversation:
+            {history}
+
+            User's Request: "{request}"
+            """;
+
+    private final CompiledPrompt recommendationPrompt;
+
+    // Bước 1: lấy templates, gói giá và context của session song song
+    private final WorkflowStep<ConsultingContext> gatherStep;
 
     @Data
     private static class ConsultingContext {
         private AgentRequest originalRequest;
         private List<WebsiteTemplateTool.TemplateInfo> availableTemplates;
+        private List<PricingInfoTool.PlanInfo> pricingPlans;
+        private String conversationContext;
         private String finalRecommendation;
     }
 
+    public ConsultingChainWorkflow(WebsiteTemplateTool getTemplatesTool,
+                                   PricingInfoTool getPricingTool,
+                                   ToolRegistry toolRegistry,
+                                   PromptRegistry promptRegistry,
+                                   ContextAssembler contextAssembler,
+                                   AgentMemoryService memoryService,
+                                   AgentMetrics metrics,
+                                   @Qualifier("plainChatClient") ChatClient chatClient,
+                                   @Qualifier("agentTaskExecutor") AsyncTaskExecutor executor,
+                                   @Value("${agent.workflow.consulting.branch-timeout:PT5S}") Duration branchTimeout) {
+        this.getTemplatesTool = toolRegistry.resolve(getTemplatesTool);
+        this.getPricingTool = toolRegistry.resolve(getPricingTool);
+        this.memoryService = memoryService;
+        this.chatClient = chatClient;
+        this.contextAssembler = contextAssembler;
+        this.metrics = metrics;
+        this.recommendationPrompt = promptRegistry.compile("consulting.recommendation", RECOMMENDATION_PROMPT_TEMPLATE);
+
+        this.gatherStep = WorkflowStep.<ConsultingContext>parallel(executor)
+                .defaultTimeout(branchTimeout)
+                // Không có templates thì không tư vấn được
+                .branch("fetchTemplates", this::fetchAvailableTemplates, ConsultingContext::setAvailableTemplates)
+                // Gói giá và context chỉ bổ sung cho câu trả lời
+                .optionalBranch("fetchPricingPlans", this::fetchPricingPlans, ConsultingContext::setPricingPlans,
+                        List::of)
+                .optionalBranch("loadSessionMemory", this::loadSessionMemory, ConsultingContext::setConversationContext,
+                        () -> "")
+                .build();
+    }
+
     @Override
     public AgentResponse execute(AgentRequest request) {
         ConsultingContext context = new ConsultingContext();
         context.setOriginalRequest(request);
 
-        WorkflowStep<ConsultingContext> fetchTemplatesStep = this::fetchAvailableTemplates;
+        // Bước 1 chạy song song nên đo cả bước; từng tool và memory retrieval có timer riêng
+        WorkflowStep<ConsultingContext> gather = ctx -> metrics.recordStage("gather", request.getTenantId(),
+                () -> gatherStep.execute(ctx));
         WorkflowStep<ConsultingContext> analyzeAndRecommendStep = this::analyzeAndRecommend;
 
-        ConsultingContext finalContext = fetchTemplatesStep.andThen(analyzeAndRecommendStep).execute(context);(analyzeAndRecommendStep).execute(context);
+        ConsultingContext finalContext = gather.andThen(analyzeAndRecommendStep).execute(context);
 
         return new AgentResponse(finalContext.getFinalRecommendation(), AgentResponse.ResponseStatus.SUCCESS);
     }
 
-    private ConsultingContext fetchAvailableTemplates(ConsultingContext context) {
-        System.out.println("[Chain] Step 1: Fetching available templates...");
-        WebsiteTemplateTool.Response response = getTemplatesTool.apply(new WebsiteTemplateTool.Request());
-        context.setAvailableTemplates(response.templates());
-        return context;
+    private List<WebsiteTemplateTool.TemplateInfo> fetchAvailableTemplates(ConsultingContext context) {
+        log.debug("[Chain] Step 1a: Fetching available templates");
+        return getTemplatesTool.apply(new WebsiteTemplateTool.Request()).templates();
     }
 
-    private ConsultingContext analyzeAndRecommend(ConsultingContext context) {
-        System.out.println("[Chain] Step 2: Analyzing and recommending...");
-        String templatesAsText = context.getAvailableTemplates().stream()
-                .map(t -> String.format("- ID: %s, Name: %s, Description: %s", t.id(), t.name(), t.description()))
-                .collect(Collectors.joining("\n"));
-
-        String promptText = """
-                You are a helpful consultant. Based on the user's request and the list of available website templates, provide a helpful recommendation.
-                Your answer must be friendly and address the user directly.
+    private List<PricingInfoTool.PlanInfo> fetchPricingPlans(ConsultingContext context) {
+        log.debug("[Chain] Step 1b: Fetching pricing plans");
+        return getPricingTool.apply(new PricingInfoTool.Request()).plans();
+    }
 
-                User's Request: "{request}"
+    private String loadSessionMemory(ConsultingContext context) {
+        log.debug("[Chain] Step 1c: Loading session memory");
+        AgentRequest request = context.getOriginalRequest();
+        return memoryService.retrieveContext(request.getSessionId(), request.getTenantId(), request.getInput());
+    }
 
-                Available Templates:
-                {templates}
-                """;
-        PromptTemplate promptTemplate = new PromptTemplate(promptText);
-        Prompt prompt = promptTemplate.create(Map.of(
-                "request", context.getOriginalRequest().getInput(),
-                "templates", templatesAsText
-        ));
+    private ConsultingContext analyzeAndRecommend(ConsultingContext context) {
+        log.debug("[Chain] Step 2: Analyzing and recommending");
+        String templatesAsText = formatTemplates(context.getAvailableTemplates());
+        String plansAsText = formatPlans(context.getPricingPlans());
+
+        // Vượt ngân sách token thì cắt history cũ trước, rồi tới cuối danh sách gói giá, cuối cùng là templates
+        ContextAssembler.Assembly assembly = contextAssembler.assemble("consulting", recommendationPrompt, 1, List.of(
+                ContextAssembler.Section.keepHead("templates", templatesAsText, 3),
+                ContextAssembler.Section.keepHead("plans", plansAsText, 2),
+                ContextAssembler.Section.keepTail("history", context.getConversationContext(), 1),
+                ContextAssembler.Section.required("request", context.getOriginalRequest().getInput())));
+
+        Prompt prompt = new Prompt(new UserMessage(recommendationPrompt.render(Map.of(
+                "templates", assembly.text("templates"),
+                "plans", assembly.text("plans"),
+                "history", assembly.text("history"),
+                "request", assembly.text("request")
+        ))));
 
         // --- ĐÂY LÀ THAY ĐỔI QUAN TRỌNG NHẤT ---
         // Xóa dòng code cũ:
         // String recommendation = chatClient.call(prompt).getResult().getOutput().getContent();
 
         // Thay bằng cách gọi theo chuỗi (fluent API) của phiên bản cũ:
-        String recommendation = chatClient.prompt(prompt) // Bắt đầu xây dựng request với Prompt
+        String tenantId = context.getOriginalRequest().getTenantId();
+        String recommendation = metrics.recordStage("llm", tenantId, () -> chatClient.prompt(prompt) // Bắt đầu xây dựng request với Prompt
+                .advisors(TokenUsageAdvisor.params("consulting", tenantId))
                 .call()                                   // Thực hiện lời gọi API
-                .content();                               // Lấy nội dung text từ response
+                .content());                              // Lấy nội dung text từ response
 
         context.setFinalRecommendation(recommendation);
         return context;
     }
+
+    static String formatTemplates(List<WebsiteTemplateTool.TemplateInfo> templates) {
+        return templates.stream()
+                .map(t -> String.format("- ID: %s, Name: %s, Description: %s", t.id(), t.name(), t.description()))
+                .collect(Collectors.joining("\n"));
+    }
+
+    static String formatPlans(List<PricingInfoTool.PlanInfo> plans) {
+        return plans.stream()
+                .map(p -> String.format("- %s: %s %s, Features: %s", p.planName(), p.price(), p.currency(),
+                        p.features() != null ? String.join(", ", p.features()) : ""))
+                .collect(Collectors.joining("\n"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.service.ai_agent.agent.workflow.chain;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bước fork/join cho chain: các nhánh độc lập chạy đồng thời, thời gian của bước
+ * bằng nhánh chậm nhất thay vì tổng các nhánh.
+ *
+ * Mỗi nhánh chỉ đọc context và trả về kết quả riêng; việc merge kết quả vào context được thực hiện
+ * tuần tự trên thread gọi sau khi join, nên context không cần thread-safe.
+ *
+ * Timeout và lỗi chỉ làm bước ngừng chờ: CompletableFuture không interrupt thread đang chạy nhánh,
+ * nên nhánh quá thời gian hoặc các nhánh còn lại khi FAIL vẫn chạy đến hết ở nền, kết quả bị bỏ.
+ * Nhánh có side effect hoặc chiếm tài nguyên lâu cần tự giới hạn thời gian (timeout của HTTP client...).
+ */
+@Slf4j
+public class ParallelStep<T> implements WorkflowStep<T> {
+
+    /**
+     * Cách xử lý khi một nhánh lỗi hoặc quá thời gian.
+     */
+    public enum FailurePolicy {
+        // Ném WorkflowStepException ngay, không chờ các nhánh còn lại (chúng không bị dừng, xem ở trên)
+        FAIL,
+        // Bỏ qua nhánh (dùng giá trị fallback nếu có), các nhánh khác vẫn được merge
+        CONTINUE
+    }
+
+    private record Branch<T, R>(String name,
+                                Function<T, R> work,
+                                BiConsumer<T, R> merge,
+                                Duration timeout,
+                                FailurePolicy failurePolicy,
+                                Supplier<R> fallback) {}
+
+    private final Executor executor;
+    private final List<Branch<T, ?>> branches;
+
+    private ParallelStep(Executor executor, List<Branch<T, ?>> branches) {
+        this.executor = executor;
+        this.branches = List.copyOf(branches);
+    }
+
+    static <T> Builder<T> builder(Executor executor) {
+        return new Builder<>(executor);
+    }
+
+    @Override
+    public T execute(T context) {
+        // Fork: khởi chạy tất cả các nhánh trước khi chờ nhánh nào
+        List<CompletableFuture<?>> futures = new ArrayList<>(branches.size());
+        for (Branch<T, ?> branch : branches) {
+            futures.add(CompletableFuture.supplyAsync(() -> branch.work().apply(context), executor)
+                    .orTimeout(branch.timeout().toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        // Join + merge theo thứ tự khai báo
+        for (int i = 0; i < branches.size(); i++) {
+            try {
+                join(branches.get(i), futures.get(i), context);
+            } catch (WorkflowStepException e) {
+                // Chỉ hoàn tất các future để không ai chờ chúng nữa, không interrupt nhánh đang chạy
+                futures.forEach(future -> future.cancel(true));
+                throw e;
+            }
+        }
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> void join(Branch<T, R> branch, CompletableFuture<?> future, T context) {
+        R result;
+        try {
+            result = (R) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowStepException(branch.name(), "Interrupted while waiting for step " + branch.name(), e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            String reason = cause instanceof TimeoutException
+                    ? "timed out after " + branch.timeout().toMillis() + " ms"
+                    : "failed: " + cause.getMessage();
+
+            if (branch.failurePolicy() == FailurePolicy.FAIL) {
+                throw new WorkflowStepException(branch.name(), "Parallel step " + branch.name() + " " + reason, cause);
+            }
+            log.warn("Parallel step {} {}, continuing{}", branch.name(), reason,
+                    branch.fallback() != null ? " with fallback" : "");
+            if (branch.fallback() == null) {
+                return;
+            }
+            result = branch.fallback().get();
+        }
+        branch.merge().accept(context, result);
+    }
+
+    public static class Builder<T> {
+
+        private final Executor executor;
+        private final List<Branch<T, ?>> branches = new ArrayList<>();
+        private Duration defaultTimeout = Duration.ofSeconds(10);
+
+        private Builder(Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * Timeout cho các nhánh được khai báo sau đó mà không có timeout riêng.
+         */
+        public Builder<T> defaultTimeout(Duration timeout) {
+            this.defaultTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Nhánh bắt buộc: lỗi hoặc quá thời gian thì cả chain thất bại.
+         */
+        public <R> Builder<T> branch(String name, Function<T, R> work, BiConsumer<T, R> merge) {
+            return branch(name, work, merge, defaultTimeout, FailurePolicy.FAIL, null);
+        }
+
+        /**
+         * Nhánh tùy chọn: lỗi hoặc quá thời gian thì merge giá trị fallback (nếu khác null) và tiếp tục.
+         */
+        public <R> Builder<T> optionalBranch(String name, Function<T, R> work, BiConsumer<T, R> merge,
+                                             Supplier<R> fallback) {
+            return branch(name, work, merge, defaultTimeout, FailurePolicy.CONTINUE, fallback);
+        }
+
+        public <R> Builder<T> branch(String name, Function<T, R> work, BiConsumer<T, R> merge,
+                                     Duration timeout, FailurePolicy failurePolicy, Supplier<R> fallback) {
+            branches.add(new Branch<>(name, work, merge, timeout, failurePolicy, fallback));
+            return this;
+        }
+
+        public ParallelStep<T> build() {
+            return new ParallelStep<>(executor, branches);
+        }
+    }
+}
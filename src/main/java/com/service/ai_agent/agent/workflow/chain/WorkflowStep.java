@@ -1,5 +1,7 @@
 package com.service.ai_agent.agent.workflow.chain;
 
+import java.util.concurrent.Executor;
+
 @FunctionalInterface
 public interface WorkflowStep<T> {
     T execute(T context);
@@ -7,4 +9,12 @@ public interface WorkflowStep<T> {
     default WorkflowStep<T> andThen(WorkflowStep<T> next) {
         return context -> next.execute(this.execute(context));
     }
+
+    /**
+     * Bắt đầu khai báo một bước song song: các nhánh độc lập chạy đồng thời trên executor,
+     * kết quả được merge vào context sau khi tất cả hoàn tất.
+     */
+    static <T> ParallelStep.Builder<T> parallel(Executor executor) {
+        return ParallelStep.builder(executor);
+    }
 }
\ No newline at end of file
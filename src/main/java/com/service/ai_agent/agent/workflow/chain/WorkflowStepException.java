@@ -0,0 +1,18 @@
+package com.service.ai_agent.agent.workflow.chain;
+
+/**
+ * Lỗi khi một bước của chain thất bại (hoặc quá thời gian) với failure policy FAIL.
+ */
+public class WorkflowStepException extends RuntimeException {
+
+    private final String stepName;
+
+    public WorkflowStepException(String stepName, String message, Throwable cause) {
+        super(message, cause);
+        this.stepName = stepName;
+    }
+
+    public String getStepName() {
+        return stepName;
+    }
+}
\ No newline at end of file
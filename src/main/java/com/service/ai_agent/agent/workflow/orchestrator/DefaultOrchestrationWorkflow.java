@@ -1,15 +1,24 @@
 package com.service.ai_agent.agent.workflow.orchestrator;
 
 import com.service.ai_agent.agent.memory.AgentMemoryService;
+import com.service.ai_agent.agent.metrics.AgentMetrics;
+import com.service.ai_agent.agent.metrics.TokenUsageAdvisor;
+import com.service.ai_agent.agent.prompt.ContextAssembler;
 import com.service.ai_agent.agent.prompt.SystemPromptFactory;
 import com.service.ai_agent.agent.request.AgentRequest;
 import com.service.ai_agent.agent.response.AgentResponse;
+import com.service.ai_agent.agent.tools.ToolCallRecorder;
+import com.service.ai_agent.agent.tools.ToolRegistry;
+import com.service.ai_agent.agent.workflow.route.IntentBasedRoutingWorkflow;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 
@@ -17,23 +26,141 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DefaultOrchestrationWorkflow implements OrchestrationWorkflow {
 
+    private static final String ROUTE_STREAM = IntentBasedRoutingWorkflow.ROUTE_ORCHESTRATION_WORKFLOW + ":stream";
+
     private final ChatClient chatClient;
     private final AgentMemoryService memoryService;
     private final SystemPromptFactory promptFactory;
+    private final SemanticResponseCache responseCache;
+    private final ContextAssembler contextAssembler;
+    private final ToolRegistry toolRegistry;
+    private final AgentMetrics metrics;
+
+    /**
+     * Context của session và kết quả tra cứu cache (null nếu không được dùng cache cho request này).
+     */
+    private record Preparation(String context, SemanticResponseCache.Lookup lookup) {
+
+        boolean isHit() {
+            return lookup != null && lookup.isHit();
+        }
+    }
 
     @Override
     public AgentResponse process(AgentRequest request) {
-        String context = memoryService.retrieveContext(request.getSessionId(), request.getTenantId());
-        String systemPromptText = promptFactory.createSystemPrompt(context);
-        SystemMessage systemMessage = new SystemMessage(systemPromptText);
-        UserMessage userMessage = new UserMessage(request.getInput());
+        Preparation preparation = prepare(request);
+        // Câu hỏi tự đủ nghĩa đã được trả lời cho tenant này: không cần gọi model
+        if (preparation.isHit()) {
+            String answer = preparation.lookup().answer().toUpperCase();
+            saveInteraction(request, answer);
+            return new AgentResponse(answer, AgentResponse.ResponseStatus.SUCCESS);
+        }
 
-        Prompt prompt = new Prompt(List.of(systemMessage, userMessage));
-        String aiResponseContent = chatClient.prompt(prompt).call().content().trim().toUpperCase();
+        String context = preparation.context();
+        Prompt prompt = buildPrompt(request, context);
+        ToolCallRecorder toolCalls = new ToolCallRecorder();
+        long start = System.nanoTime();
+        String generated = metrics.recordStage("llm", request.getTenantId(), () -> chatClient.prompt(prompt)
+                .advisors(TokenUsageAdvisor.params("orchestration", request.getTenantId()))
+                .toolContext(toolCalls.toolContext())
+                .call().content().trim());
+        // Cache giữ output đã chuẩn hóa, giống đường stream; chữ hoa chỉ áp dụng cho response của đường đồng bộ
+        recordGeneration(preparation.lookup(), toolCalls, generated, (System.nanoTime() - start) / 1_000_000);
+        String aiResponseContent = generated.toUpperCase();
 
-
-        memoryService.saveInteraction(request, aiResponseContent);
+        saveInteraction(request, aiResponseContent);
 
         return new AgentResponse(aiResponseContent, AgentResponse.ResponseStatus.SUCCESS);
     }
+
+    @Override
+    public Flux<String> processStream(AgentRequest request) {
+        // Build prompt (kể cả retrieve context từ DB) trên thread subscribe, không chặn event loop của HTTP client
+        long requestStart = System.nanoTime();
+        return Mono.fromCallable(() -> prepare(request))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(preparation -> {
+                    StringBuilder fullResponse = new StringBuilder();
+                    // Chỉ lưu interaction khi stream kết thúc thành công; saveInteraction là blocking (JPA + embedding)
+                    Mono<String> persist = Mono.fromRunnable(() ->
+                                    saveInteraction(request, fullResponse.toString().trim()))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.empty());
+
+                    if (preparation.isHit()) {
+                        fullResponse.append(preparation.lookup().answer());
+                        return Flux.just(preparation.lookup().answer()).concatWith(persist);
+                    }
+
+                    String context = preparation.context();
+                    ToolCallRecorder toolCalls = new ToolCallRecorder();
+                    long start = System.nanoTime();
+                    Flux<String> tokens = chatClient.prompt(buildPrompt(request, context))
+                            .advisors(TokenUsageAdvisor.params("orchestration", request.getTenantId()))
+                            .toolContext(toolCalls.toolContext())
+                            .stream().content()
+                            .doOnNext(fullResponse::append)
+                            .doOnComplete(() -> {
+                                long millis = (System.nanoTime() - start) / 1_000_000;
+                                metrics.recordStage("llm", request.getTenantId(), System.nanoTime() - start, true);
+                                recordGeneration(preparation.lookup(), toolCalls, fullResponse.toString().trim(), millis);
+                            })
+                            .doOnError(error -> metrics.recordStage("llm", request.getTenantId(),
+                                    System.nanoTime() - start, false));
+
+                    return tokens.concatWith(persist);
+                })
+                // Stream không đi qua MasterAgentService: ghi agent.request ở đây, client hủy giữa chừng thì không ghi
+                .doOnComplete(() -> metrics.recordRequest(ROUTE_STREAM, request.getTenantId(),
+                        System.nanoTime() - requestStart, true))
+                .doOnError(error -> metrics.recordRequest(ROUTE_STREAM, request.getTenantId(),
+                        System.nanoTime() - requestStart, false));
+    }
+
+    private void saveInteraction(AgentRequest request, String answer) {
+        // Đo ở nơi gọi để tính cả thời gian commit transaction của saveInteraction
+        metrics.recordStage("save_interaction", request.getTenantId(),
+                () -> memoryService.saveInteraction(request, answer));
+    }
+
+    /**
+     * Lấy context của session rồi mới tra cứu semantic cache: chỉ dùng cache (cả đọc lẫn ghi) khi session
+     * chưa có context, để câu trả lời không phụ thuộc vào cuộc hội thoại, và khi input tự đủ nghĩa.
+     */
+    private Preparation prepare(AgentRequest request) {
+        String context = memoryService.retrieveContext(request.getSessionId(), request.getTenantId(), request.getInput());
+        if (context != null && !context.isBlank()) {
+            return new Preparation(context, null);
+        }
+        SemanticResponseCache.Lookup lookup = metrics.recordStage("response_cache", request.getTenantId(),
+                () -> responseCache.isCacheable(request.getInput())
+                        ? responseCache.lookup(request.getTenantId(), request.getInput()) : null);
+        return new Preparation(context, lookup);
+    }
+
+    /**
+     * Chỉ lưu vào cache khi đã tra cứu (session chưa có context) và model chỉ gọi tool idempotent:
+     * trả lại câu trả lời của một lần gọi tool có side effect (tạo website) sẽ bỏ qua side effect đó.
+     */
+    private void recordGeneration(SemanticResponseCache.Lookup lookup, ToolCallRecorder toolCalls,
+                                  String answer, long generationMillis) {
+        boolean sideEffects = toolCalls.getCalledTools().stream().anyMatch(tool -> !toolRegistry.isIdempotent(tool));
+        if (lookup != null && !sideEffects) {
+            responseCache.store(lookup, answer, generationMillis);
+        } else {
+            responseCache.recordGeneration(generationMillis);
+        }
+    }
+
+    private Prompt buildPrompt(AgentRequest request, String context) {
+        // Input của người dùng luôn giữ nguyên, context của session bị cắt từ các message cũ nhất nếu vượt ngân sách
+        ContextAssembler.Assembly assembly = contextAssembler.assemble("orchestration", promptFactory.getTemplate(), 2,
+                List.of(ContextAssembler.Section.required("input", request.getInput()),
+                        ContextAssembler.Section.keepTail("memory", context, 1)));
+        String systemPromptText = promptFactory.createSystemPrompt(assembly.text("memory"));
+        SystemMessage systemMessage = new SystemMessage(systemPromptText);
+        UserMessage userMessage = new UserMessage(request.getInput());
+
+        return new Prompt(List.of(systemMessage, userMessage));
+    }
 }
\ No newline at end of file
@@ -2,7 +2,14 @@ package com.service.ai_agent.agent.workflow.orchestrator;
 
 import com.service.ai_agent.agent.request.AgentRequest;
 import com.service.ai_agent.agent.response.AgentResponse;
+import reactor.core.publisher.Flux;
 
 public interface OrchestrationWorkflow {
     AgentResponse process(AgentRequest request);
+
+    /**
+     * Xử lý request ở chế độ streaming: phát ra từng token ngay khi model sinh ra.
+     * Interaction đầy đủ được lưu vào memory sau khi stream kết thúc.
+     */
+    Flux<String> processStream(AgentRequest request);
 }
\ No newline at end of file
@@ -0,0 +1,272 @@
+package com.service.ai_agent.agent.workflow.orchestrator;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.service.ai_agent.agent.memory.AgentMemoryService;
+import com.service.ai_agent.agent.workflow.route.KeywordIntentClassifier;
+import com.service.ai_agent.domain.ConversationHistory;
+import com.service.ai_agent.infrastructure.laravel_api.CatalogChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache câu trả lời theo ngữ nghĩa, đặt trước lời gọi LLM của DefaultOrchestrationWorkflow.
+ * Input được embed và so cosine với các câu hỏi đã trả lời trước đó của cùng tenant; vượt ngưỡng
+ * similarity thì trả lại câu trả lời cũ mà không gọi model. Input trùng khớp sau chuẩn hóa thì không cần embed.
+ *
+ * Chỉ áp dụng cho các câu hỏi tự đủ nghĩa (không tham chiếu tới hội thoại trước đó) và không phải
+ * yêu cầu hành động (tạo website): câu trả lời cache lại sẽ bỏ qua việc gọi tool. Nơi gọi chỉ lưu câu trả lời
+ * sinh ra khi session chưa có context và không gọi tool có side effect. Toàn bộ cache bị xóa khi catalog thay đổi.
+ */
+@Component
+@Slf4j
+public class SemanticResponseCache {
+
+    // Dấu hiệu input phụ thuộc vào các turn trước (so khớp theo từ, sau khi chuẩn hóa)
+    private static final Set<String> CONTEXT_REFERENCES = Set.of(
+            "đó", "này", "nó", "kia", "vậy", "vừa rồi", "lúc nãy", "ở trên", "như trên", "nữa", "tiếp", "còn",
+            "that", "this", "it", "them", "those", "above", "previous", "again", "more", "else");
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final Duration ttl;
+    private final int maxEntriesPerTenant;
+    private final Cache<String, TenantEntries> tenants;
+
+    // Tăng mỗi lần invalidate; câu trả lời sinh ra trước đó không được lưu vào cache nữa
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder semanticHits = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder hitMillis = new LongAdder();
+    private final LongAdder generatedCount = new LongAdder();
+    private final LongAdder generatedMillis = new LongAdder();
+
+    /**
+     * Kết quả tra cứu, giữ lại embedding của input để lưu câu trả lời mà không phải embed lại.
+     * @param answer Câu trả lời đã cache, null nếu miss.
+     */
+    public record Lookup(String tenantId, String normalizedInput, float[] embedding, String answer, long generation) {
+        public boolean isHit() {
+            return answer != null;
+        }
+    }
+
+    /**
+     * @param estimatedSavedMillis Số hit nhân với latency trung bình của một lần gọi model, trừ thời gian tra cứu của các hit.
+     */
+    public record Stats(boolean enabled, long tenants, long lookups, long exactHits, long semanticHits, long skipped,
+                        long stores, long invalidations, double hitRate, double meanGenerationMillis,
+                        double meanHitMillis, long estimatedSavedMillis) {}
+
+    private record Entry(String normalizedInput, float[] embedding, String answer, Instant createdAt) {}
+
+    public SemanticResponseCache(EmbeddingModel embeddingModel,
+                                 @Value("${agent.response-cache.enabled:false}") boolean enabled,
+                                 @Value("${agent.response-cache.similarity-threshold:0.92}") double similarityThreshold,
+                                 @Value("${agent.response-cache.ttl:PT1H}") Duration ttl,
+                                 @Value("${agent.response-cache.max-entries-per-tenant:500}") int maxEntriesPerTenant,
+                                 @Value("${agent.response-cache.max-tenants:1000}") long maxTenants) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.ttl = ttl;
+        this.maxEntriesPerTenant = maxEntriesPerTenant;
+        this.tenants = Caffeine.newBuilder()
+                .maximumSize(maxTenants)
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    /**
+     * Input có thể dùng cache hay không: cache đang bật, input không phải yêu cầu tạo website
+     * và không tham chiếu tới hội thoại trước đó.
+     */
+    public boolean isCacheable(String input) {
+        if (!enabled) {
+            return false;
+        }
+        if (input == null
+                || AgentMemoryService.determineRequestType(input) == ConversationHistory.RequestType.CREATION_REQUEST) {
+            skipped.increment();
+            return false;
+        }
+        String padded = " " + KeywordIntentClassifier.normalize(input) + " ";
+        for (String reference : CONTEXT_REFERENCES) {
+            if (padded.contains(" " + reference + " ")) {
+                skipped.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tìm câu trả lời cho input trong các câu hỏi trước của tenant. Lỗi embedding được coi là miss.
+     */
+    public Lookup lookup(String tenantId, String input) {
+        long start = System.nanoTime();
+        long currentGeneration = generation.get();
+        String normalizedInput = KeywordIntentClassifier.normalize(input);
+        lookups.increment();
+
+        TenantEntries entries = tenants.getIfPresent(tenantId);
+        String exact = entries != null ? entries.findExact(normalizedInput) : null;
+        if (exact != null) {
+            exactHits.increment();
+            hitMillis.add((System.nanoTime() - start) / 1_000_000);
+            return new Lookup(tenantId, normalizedInput, null, exact, currentGeneration);
+        }
+
+        float[] embedding;
+        try {
+            embedding = normalize(embeddingModel.embed(normalizedInput));
+        } catch (Exception e) {
+            log.debug("Failed to embed input for response cache: {}", e.getMessage());
+            return new Lookup(tenantId, normalizedInput, null, null, currentGeneration);
+        }
+
+        String similar = entries != null ? entries.findSimilar(embedding) : null;
+        if (similar != null) {
+            semanticHits.increment();
+            hitMillis.add((System.nanoTime() - start) / 1_000_000);
+        }
+        return new Lookup(tenantId, normalizedInput, embedding, similar, currentGeneration);
+    }
+
+    /**
+     * Lưu câu trả lời vừa sinh ra cho input đã tra cứu (miss).
+     * @param generationMillis Thời gian gọi model để sinh câu trả lời, dùng để ước lượng latency tiết kiệm được.
+     */
+    public void store(Lookup lookup, String answer, long generationMillis) {
+        generatedCount.increment();
+        generatedMillis.add(generationMillis);
+        if (lookup.embedding() == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        // Catalog đã thay đổi trong lúc sinh câu trả lời: câu trả lời có thể đã cũ
+        if (lookup.generation() != generation.get()) {
+            return;
+        }
+        tenants.get(lookup.tenantId(), key -> new TenantEntries())
+                .add(new Entry(lookup.normalizedInput(), lookup.embedding(), answer, Instant.now()));
+        stores.increment();
+    }
+
+    /**
+     * Ghi nhận latency của một lần gọi model không qua cache (input không cacheable), để ước lượng chính xác hơn.
+     */
+    public void recordGeneration(long generationMillis) {
+        generatedCount.increment();
+        generatedMillis.add(generationMillis);
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        invalidateAll();
+        log.info("Response cache cleared after catalog {} changed", event.catalog());
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        tenants.invalidateAll();
+        invalidations.increment();
+    }
+
+    public Stats getStats() {
+        long lookupCount = lookups.sum();
+        long hits = exactHits.sum() + semanticHits.sum();
+        long generated = generatedCount.sum();
+        double meanGeneration = generated > 0 ? (double) generatedMillis.sum() / generated : 0;
+        double meanHit = hits > 0 ? (double) hitMillis.sum() / hits : 0;
+        long saved = Math.max(0, Math.round(hits * meanGeneration) - hitMillis.sum());
+        return new Stats(enabled, tenants.estimatedSize(), lookupCount, exactHits.sum(), semanticHits.sum(),
+                skipped.sum(), stores.sum(), invalidations.sum(), lookupCount > 0 ? (double) hits / lookupCount : 0,
+                meanGeneration, meanHit, saved);
+    }
+
+    /**
+     * Các câu trả lời đã cache của một tenant, mới nhất ở đầu; tra cứu bằng quét tuyến tính
+     * vì số entry mỗi tenant nhỏ và mỗi phép so chỉ là một tích vô hướng.
+     */
+    private class TenantEntries {
+
+        private final Deque<Entry> entries = new ArrayDeque<>();
+
+        synchronized String findExact(String normalizedInput) {
+            removeExpired();
+            for (Entry entry : entries) {
+                if (entry.normalizedInput().equals(normalizedInput)) {
+                    return entry.answer();
+                }
+            }
+            return null;
+        }
+
+        synchronized String findSimilar(float[] embedding) {
+            removeExpired();
+            Entry best = null;
+            double bestScore = similarityThreshold;
+            for (Entry entry : entries) {
+                double score = dot(embedding, entry.embedding());
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+            return best != null ? best.answer() : null;
+        }
+
+        synchronized void add(Entry entry) {
+            entries.addFirst(entry);
+            while (entries.size() > maxEntriesPerTenant) {
+                entries.removeLast();
+            }
+        }
+
+        private void removeExpired() {
+            Instant cutoff = Instant.now().minus(ttl);
+            Iterator<Entry> oldest = entries.descendingIterator();
+            while (oldest.hasNext() && oldest.next().createdAt().isBefore(cutoff)) {
+                oldest.remove();
+            }
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return vector;
+        }
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
\ No newline at end of file
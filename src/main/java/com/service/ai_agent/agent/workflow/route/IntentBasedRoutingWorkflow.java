@@ -1,42 +1,122 @@
 package com.service.ai_agent.agent.workflow.route;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.service.ai_agent.agent.metrics.TokenUsageAdvisor;
+import com.service.ai_agent.agent.prompt.CompiledPrompt;
+import com.service.ai_agent.agent.prompt.PromptRegistry;
 import com.service.ai_agent.agent.request.AgentRequest;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class IntentBasedRoutingWorkflow implements RoutingWorkflow {
 
     private final ChatClient chatClient;
+    private final KeywordIntentClassifier localClassifier;
+    private final CompiledPrompt routingPrompt;
 
     public static final String ROUTE_CONSULTING_WORKFLOW = "workflow:chain:consulting";
     public static final String ROUTE_ORCHESTRATION_WORKFLOW = "workflow:orchestration:default";
 
+    // Input của người dùng đứng cuối để phần hướng dẫn là prefix tĩnh giữa các request
     private static final String ROUTING_PROMPT_TEMPLATE = """
             You are an expert intent classifier. Your task is to classify the user's request into one of the following categories:
             - CONSULTING: The user is asking for advice, recommendations, or doesn't know what to choose (e.g., 'tư vấn cho tôi', 'nên chọn mẫu nào', 'tôi muốn làm web bán hàng thì sao').
             - ORCHESTRATION: The user has a direct command or question that can be answered by using tools (e.g., 'tạo cho tôi web', 'giá gói nâng cao là bao nhiêu', 'liệt kê các giao diện').
 
+            Respond with only one word: CONSULTING or ORCHESTRATION.
+
             Based on the user's request below, what is the correct category?
             Request: "{input}"
-            
-            Respond with only one word: CONSULTING or ORCHESTRATION.
             """;
 
+    // Ngưỡng để tin kết quả của bộ phân loại cục bộ mà không cần hỏi LLM
+    private final double localConfidenceThreshold;
+    private final double localMinScore;
+
+    // Cache quyết định của LLM theo input đã chuẩn hóa
+    private final Cache<String, String> decisionCache;
+
+    private final LongAdder cacheResolved = new LongAdder();
+    private final LongAdder localResolved = new LongAdder();
+    private final LongAdder llmResolved = new LongAdder();
+
+    /**
+     * Số route được quyết định ở mỗi tầng, dùng để tinh chỉnh ngưỡng.
+     */
+    public record TierStats(long cacheResolved, long localResolved, long llmResolved, long cacheSize) {}
+
+    public IntentBasedRoutingWorkflow(@Qualifier("plainChatClient") ChatClient chatClient,
+                                      KeywordIntentClassifier localClassifier,
+                                      PromptRegistry promptRegistry,
+                                      @Value("${agent.routing.local.confidence-threshold:0.8}") double localConfidenceThreshold,
+                                      @Value("${agent.routing.local.min-score:1.5}") double localMinScore,
+                                      @Value("${agent.routing.cache.max-entries:10000}") long cacheMaxEntries,
+                                      @Value("${agent.routing.cache.ttl:PT6H}") Duration cacheTtl) {
+        this.chatClient = chatClient;
+        this.localClassifier = localClassifier;
+        this.routingPrompt = promptRegistry.compile("routing.classifier", ROUTING_PROMPT_TEMPLATE);
+        this.localConfidenceThreshold = localConfidenceThreshold;
+        this.localMinScore = localMinScore;
+        this.decisionCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
     @Override
     public String determineRoute(AgentRequest request) {
-        PromptTemplate promptTemplate = new PromptTemplate(ROUTING_PROMPT_TEMPLATE);
-        Prompt prompt = promptTemplate.create(Map.of("input", request.getInput()));
+        String normalizedInput = KeywordIntentClassifier.normalize(request.getInput());
 
-        String intent = chatClient.prompt(prompt).call().content().trim().toUpperCase();
+        // Tầng 1: quyết định đã có trong cache
+        String cached = decisionCache.getIfPresent(normalizedInput);
+        if (cached != null) {
+            cacheResolved.increment();
+            return cached;
+        }
+
+        // Tầng 2: bộ phân loại từ khóa cục bộ, chỉ dùng khi đủ chắc chắn
+        KeywordIntentClassifier.Classification classification = localClassifier.classify(normalizedInput);
+        if (classification.intent() != null
+                && classification.confidence() >= localConfidenceThreshold
+                && classification.score() >= localMinScore) {
+            localResolved.increment();
+            log.debug("Routed locally as {} (confidence: {}, score: {})",
+                    classification.intent(), classification.confidence(), classification.score());
+            return toRoute(classification.intent());
+        }
+
+        // Tầng 3: hỏi LLM khi tầng cục bộ không chắc chắn
+        Prompt prompt = new Prompt(new UserMessage(routingPrompt.render(Map.of("input", request.getInput()))));
+
+        String intent = chatClient.prompt(prompt)
+                .advisors(TokenUsageAdvisor.params("routing", request.getTenantId()))
+                .call().content().trim().toUpperCase();
+        llmResolved.increment();
+
+        String route = toRoute(intent);
+        decisionCache.put(normalizedInput, route);
+        return route;
+    }
+
+    public TierStats getTierStats() {
+        return new TierStats(cacheResolved.sum(), localResolved.sum(), llmResolved.sum(),
+                decisionCache.estimatedSize());
+    }
 
-        if ("CONSULTING".equals(intent)) {
+    private String toRoute(String intent) {
+        if (KeywordIntentClassifier.CONSULTING.equals(intent)) {
             return ROUTE_CONSULTING_WORKFLOW;
         }
         
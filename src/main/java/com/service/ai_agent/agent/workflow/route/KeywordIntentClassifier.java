@@ -0,0 +1,100 @@
+package com.service.ai_agent.agent.workflow.route;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bộ phân loại intent cục bộ dựa trên từ khóa, chạy trước khi phải hỏi LLM.
+ * Mỗi từ khóa có một trọng số; confidence là tỉ lệ điểm của intent thắng trên tổng điểm.
+ * Không có từ khóa nào khớp thì confidence = 0 và router sẽ hỏi LLM.
+ */
+@Component
+public class KeywordIntentClassifier {
+
+    public static final String CONSULTING = "CONSULTING";
+    public static final String ORCHESTRATION = "ORCHESTRATION";
+
+    // Dấu hiệu người dùng cần tư vấn, chưa biết chọn gì
+    private static final Map<String, Double> CONSULTING_KEYWORDS = Map.ofEntries(
+            Map.entry("tư vấn", 2.0),
+            Map.entry("nên chọn", 2.0),
+            Map.entry("nên dùng", 1.5),
+            Map.entry("gợi ý", 1.5),
+            Map.entry("phù hợp", 1.5),
+            Map.entry("mẫu nào", 1.5),
+            Map.entry("gói nào", 1.5),
+            Map.entry("thì sao", 1.0),
+            Map.entry("không biết", 1.0),
+            Map.entry("recommend", 2.0),
+            Map.entry("suggest", 1.5),
+            Map.entry("advice", 2.0),
+            Map.entry("which", 1.0),
+            Map.entry("should i", 1.5)
+    );
+
+    // Dấu hiệu câu lệnh/câu hỏi trực tiếp có thể trả lời bằng tool
+    private static final Map<String, Double> ORCHESTRATION_KEYWORDS = Map.ofEntries(
+            Map.entry("tạo cho tôi", 2.0),
+            Map.entry("tạo web", 2.0),
+            Map.entry("tạo một", 1.5),
+            Map.entry("giá", 1.5),
+            Map.entry("bao nhiêu", 1.5),
+            Map.entry("bảng giá", 2.0),
+            Map.entry("liệt kê", 2.0),
+            Map.entry("danh sách", 1.5),
+            Map.entry("cho tôi xem", 1.5),
+            Map.entry("create", 1.5),
+            Map.entry("price", 1.5),
+            Map.entry("pricing", 1.5),
+            Map.entry("how much", 1.5),
+            Map.entry("list", 1.5),
+            Map.entry("show me", 1.5)
+    );
+
+    /**
+     * Kết quả phân loại cục bộ.
+     * @param intent CONSULTING, ORCHESTRATION, hoặc null nếu không có tín hiệu nào.
+     * @param confidence Trong khoảng [0, 1].
+     * @param score Tổng điểm của intent thắng, dùng cùng ngưỡng điểm tối thiểu.
+     */
+    public record Classification(String intent, double confidence, double score) {}
+
+    public Classification classify(String normalizedInput) {
+        double consulting = score(normalizedInput, CONSULTING_KEYWORDS);
+        double orchestration = score(normalizedInput, ORCHESTRATION_KEYWORDS);
+        double total = consulting + orchestration;
+        if (total == 0) {
+            return new Classification(null, 0, 0);
+        }
+        return consulting >= orchestration
+                ? new Classification(CONSULTING, consulting / total, consulting)
+                : new Classification(ORCHESTRATION, orchestration / total, orchestration);
+    }
+
+    /**
+     * Chuẩn hóa input để dùng làm key cache và để so khớp từ khóa:
+     * Unicode NFC, chữ thường, bỏ dấu câu, gộp khoảng trắng.
+     */
+    public static String normalize(String input) {
+        if (input == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(input, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        return normalized.replaceAll("[\\p{Punct}“”‘’…]", " ").replaceAll("\\s+", " ").trim();
+    }
+
+    private double score(String input, Map<String, Double> keywords) {
+        // Khớp trọn từ: "list" không khớp "playlist", "giá" không khớp "giáo dục"
+        String padded = " " + input + " ";
+        double score = 0;
+        for (Map.Entry<String, Double> keyword : keywords.entrySet()) {
+            if (padded.contains(" " + keyword.getKey() + " ")) {
+                score += keyword.getValue();
+            }
+        }
+        return score;
+    }
+}
\ No newline at end of file
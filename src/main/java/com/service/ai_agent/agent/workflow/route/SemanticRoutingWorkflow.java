@@ -0,0 +1,169 @@
+package com.service.ai_agent.agent.workflow.route;
+
+import com.service.ai_agent.agent.request.AgentRequest;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Router dựa trên embedding: mỗi route có một tập câu ví dụ được embed một lần khi khởi động,
+ * gộp thành vector trung bình (centroid) lưu trong mảng float.
+ * Mỗi request chỉ cần embed input và tính cosine với các centroid; khi route tốt nhất không vượt
+ * route thứ hai một khoảng margin đủ lớn thì mới chuyển cho IntentBasedRoutingWorkflow (LLM).
+ *
+ * Bật bằng agent.routing.strategy=semantic.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "agent.routing.strategy", havingValue = "semantic")
+@Slf4j
+public class SemanticRoutingWorkflow implements RoutingWorkflow {
+
+    // Các câu ví dụ cho từng route, cùng tinh thần với ví dụ trong prompt của IntentBasedRoutingWorkflow
+    private static final Map<String, List<String>> ROUTE_EXAMPLES = Map.of(
+            IntentBasedRoutingWorkflow.ROUTE_CONSULTING_WORKFLOW, List.of(
+                    "tư vấn cho tôi",
+                    "nên chọn mẫu nào",
+                    "tôi muốn làm web bán hàng thì sao",
+                    "mẫu giao diện nào phù hợp với shop quần áo",
+                    "gói nào hợp với doanh nghiệp nhỏ",
+                    "tôi không biết nên bắt đầu từ đâu",
+                    "which template would you recommend for a restaurant",
+                    "what should I choose for my online store"),
+            IntentBasedRoutingWorkflow.ROUTE_ORCHESTRATION_WORKFLOW, List.of(
+                    "tạo cho tôi web",
+                    "giá gói nâng cao là bao nhiêu",
+                    "liệt kê các giao diện",
+                    "cho tôi xem bảng giá",
+                    "tạo website bán hoa với mẫu tpl-fashion-01",
+                    "có những mẫu nào",
+                    "create a website for my blog",
+                    "how much is the premium plan")
+    );
+
+    private final EmbeddingModel embeddingModel;
+    private final IntentBasedRoutingWorkflow fallbackRouter;
+    private final double margin;
+    private final double minSimilarity;
+
+    // Centroid đã chuẩn hóa (độ dài 1) của từng route; song song với routeNames
+    private String[] routeNames;
+    private float[][] centroids;
+
+    private final LongAdder semanticResolved = new LongAdder();
+    private final LongAdder fallbackResolved = new LongAdder();
+
+    public record Stats(long semanticResolved, long fallbackResolved, boolean centroidsLoaded) {}
+
+    public SemanticRoutingWorkflow(EmbeddingModel embeddingModel,
+                                   IntentBasedRoutingWorkflow fallbackRouter,
+                                   @Value("${agent.routing.semantic.margin:0.05}") double margin,
+                                   @Value("${agent.routing.semantic.min-similarity:0.3}") double minSimilarity) {
+        this.embeddingModel = embeddingModel;
+        this.fallbackRouter = fallbackRouter;
+        this.margin = margin;
+        this.minSimilarity = minSimilarity;
+    }
+
+    @PostConstruct
+    void loadCentroids() {
+        try {
+            Map<String, float[]> loaded = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> route : ROUTE_EXAMPLES.entrySet()) {
+                loaded.put(route.getKey(), centroid(embeddingModel.embed(route.getValue())));
+            }
+            this.routeNames = loaded.keySet().toArray(new String[0]);
+            this.centroids = loaded.values().toArray(new float[0][]);
+            log.info("Semantic router loaded {} route centroids", routeNames.length);
+        } catch (Exception e) {
+            // Không embed được thì mọi request đi qua router LLM
+            log.error("Failed to load semantic route centroids, falling back to LLM routing: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String determineRoute(AgentRequest request) {
+        if (centroids == null) {
+            fallbackResolved.increment();
+            return fallbackRouter.determineRoute(request);
+        }
+
+        float[] query;
+        try {
+            query = normalize(embeddingModel.embed(request.getInput()));
+        } catch (Exception e) {
+            // Lỗi/rate limit của embedding API không được làm hỏng cả chat: để router dự phòng quyết định
+            log.warn("Failed to embed input for semantic routing, using fallback router: {}", e.getMessage());
+            fallbackResolved.increment();
+            return fallbackRouter.determineRoute(request);
+        }
+
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double secondScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < centroids.length; i++) {
+            double score = dot(query, centroids[i]);
+            if (score > bestScore) {
+                secondScore = bestScore;
+                bestScore = score;
+                best = i;
+            } else if (score > secondScore) {
+                secondScore = score;
+            }
+        }
+
+        if (bestScore >= minSimilarity && bestScore - secondScore >= margin) {
+            semanticResolved.increment();
+            log.debug("Routed semantically to {} (similarity: {}, margin: {})",
+                    routeNames[best], bestScore, bestScore - secondScore);
+            return routeNames[best];
+        }
+
+        fallbackResolved.increment();
+        return fallbackRouter.determineRoute(request);
+    }
+
+    public Stats getStats() {
+        return new Stats(semanticResolved.sum(), fallbackResolved.sum(), centroids != null);
+    }
+
+    private static float[] centroid(List<float[]> vectors) {
+        float[] sum = new float[vectors.get(0).length];
+        for (float[] vector : vectors) {
+            float[] unit = normalize(vector);
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += unit[i];
+            }
+        }
+        return normalize(sum);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return vector;
+        }
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,56 @@
+package com.service.ai_agent.api;
+
+import com.service.ai_agent.infrastructure.laravel_api.LaravelCatalogCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Hook để Laravel Service báo catalog (giao diện, gói giá) vừa thay đổi,
+ * giúp catalog cache làm mới ngay thay vì chờ hết hạn.
+ * Chỉ hoạt động khi agent.catalog.invalidation-token được cấu hình; không có token thì mọi request bị từ chối,
+ * để không ai cũng có thể xóa cache và buộc gọi lại Laravel.
+ */
+@RestController
+@RequestMapping("/api/v1/catalog")
+@Slf4j
+public class CatalogController {
+
+    private final LaravelCatalogCache catalogCache;
+    private final String invalidationToken;
+
+    public CatalogController(LaravelCatalogCache catalogCache,
+                             @Value("${agent.catalog.invalidation-token:}") String invalidationToken) {
+        this.catalogCache = catalogCache;
+        this.invalidationToken = invalidationToken;
+    }
+
+    /**
+     * Invalidate một catalog.
+     *
+     * @param catalog "templates" hoặc "pricing-plans"
+     * @param token   Shared secret, phải khớp agent.catalog.invalidation-token
+     */
+    @PostMapping("/{catalog}/invalidate")
+    public ResponseEntity<Void> invalidate(@PathVariable String catalog,
+                                           @RequestHeader(value = "X-Catalog-Token", required = false) String token) {
+        if (invalidationToken.isBlank()) {
+            log.warn("Rejected catalog invalidation for {}: agent.catalog.invalidation-token is not configured", catalog);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (token == null || !MessageDigest.isEqual(
+                invalidationToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Rejected catalog invalidation for {}: invalid token", catalog);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!catalogCache.invalidate(catalog)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
\ No newline at end of file
@@ -7,11 +7,16 @@ import com.service.ai_agent.api.dto.ChatRequest;
 import com.service.ai_agent.api.mapper.ChatRequestMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+
 /**
  * Controller chính để xử lý các tương tác chat với AI Agent.
  * Đóng vai trò là điểm cuối (endpoint) của API cho các ứng dụng client.
@@ -24,6 +29,9 @@ import jakarta.validation.Valid;
 @Validated
 public class ChatController {
 
+    // Thời gian tối đa giữ một kết nối SSE (ms)
+    private static final long STREAM_TIMEOUT_MS = 120_000L;
+
     // Inject trực tiếp OrchestrationWorkflow, là điểm bắt đầu của mọi logic AI.
     private final OrchestrationWorkflow orchestrationWorkflow;
     
@@ -76,6 +84,63 @@ public class ChatController {
         }
     }
 
+    /**
+     * Tiếp nhận một yêu cầu chat và trả về câu trả lời dưới dạng Server-Sent Events,
+     * phát từng token ngay khi model sinh ra thay vì chờ toàn bộ completion.
+     * Các event: "token" (một đoạn text), "done" (kết thúc), "error" (lỗi khi xử lý).
+     *
+     * @param request Đối tượng yêu cầu từ client, chứa tenant_id, user_id, session_id và metadata
+     * @return SseEmitter phát các token của câu trả lời
+     */
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChat(@Valid @RequestBody ChatRequest request) {
+        log.info("Received streaming chat request from user {} in tenant {} (session: {}): {}",
+                request.getUserId(), request.getTenantId(), request.getSessionId(), request.getInput());
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+
+        if (request.getInput() == null || request.getInput().isBlank()) {
+            log.warn("Received an empty or null streaming chat request from user {} in tenant {}",
+                    request.getUserId(), request.getTenantId());
+            sendEvent(emitter, "error", "Your request could not be processed because the input was empty.");
+            emitter.complete();
+            return emitter;
+        }
+
+        AgentRequest agentRequest = chatRequestMapper.toAgentRequestWithDefaults(request);
+
+        Disposable subscription = orchestrationWorkflow.processStream(agentRequest).subscribe(
+                token -> sendEvent(emitter, "token", token),
+                error -> {
+                    log.error("An unexpected error occurred while streaming chat response to user {} in tenant {}: {}",
+                            request.getUserId(), request.getTenantId(), error.getMessage(), error);
+                    sendEvent(emitter, "error", "An internal server error occurred. Please try again later.");
+                    emitter.complete();
+                },
+                () -> {
+                    log.info("Completed streaming agent response to user {} in tenant {} (session: {})",
+                            request.getUserId(), request.getTenantId(), request.getSessionId());
+                    sendEvent(emitter, "done", "");
+                    emitter.complete();
+                });
+
+        // Client ngắt kết nối hoặc hết thời gian → hủy lời gọi model (dispose sau khi complete là no-op)
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+
+        return emitter;
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, String data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client đã đóng kết nối; complete emitter để onCompletion hủy phần còn lại của stream
+            log.debug("Failed to send SSE event '{}': {}", name, e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
     /**
      * Health check endpoint để kiểm tra service có hoạt động không
      */
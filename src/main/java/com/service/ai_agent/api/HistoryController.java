@@ -0,0 +1,111 @@
+package com.service.ai_agent.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.ai_agent.agent.memory.repository.ConversationHistoryReader;
+import com.service.ai_agent.agent.memory.repository.HistoryCursor;
+import com.service.ai_agent.agent.memory.repository.HistoryEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Lịch sử hội thoại của một session cho admin UI.
+ * Phân trang bằng cursor (created_at, id) thay vì OFFSET; mỗi trang được đọc bằng JDBC streaming và ghi JSON
+ * ra response từng dòng một, nên bộ nhớ cho mỗi request không phụ thuộc độ dài session hay kích thước trang.
+ *
+ * Response: {"items": [{"id", "role", "content", "createdAt"}...], "nextCursor": "..." | null}
+ */
+@RestController
+@RequestMapping("/api/v1/chat/history")
+@Slf4j
+public class HistoryController {
+
+    private final ConversationHistoryReader historyReader;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
+
+    public HistoryController(ConversationHistoryReader historyReader,
+                             ObjectMapper objectMapper,
+                             @Value("${agent.history.max-page-size:1000}") int maxPageSize) {
+        this.historyReader = historyReader;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * @param cursor nextCursor của trang trước, bỏ trống để đọc từ message đầu tiên
+     * @param limit  Số message tối đa của trang (giới hạn bởi agent.history.max-page-size)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getSessionHistory(@RequestParam String tenantId,
+                                                                   @RequestParam String sessionId,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "100") int limit) {
+        if (!historyReader.isAvailable()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        HistoryCursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : HistoryCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected history request for session {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("items");
+
+                // Đọc thêm một dòng để biết còn trang sau hay không, dòng đó không được ghi ra
+                HistoryEntry[] last = {null};
+                int[] written = {0};
+                boolean[] hasMore = {false};
+                historyReader.readPage(tenantId, sessionId, after, pageSize + 1, entry -> {
+                    if (written[0] == pageSize) {
+                        hasMore[0] = true;
+                        return;
+                    }
+                    writeEntry(json, entry);
+                    last[0] = entry;
+                    written[0]++;
+                });
+
+                json.writeEndArray();
+                if (hasMore[0]) {
+                    json.writeStringField("nextCursor", last[0].cursor().encode());
+                } else {
+                    json.writeNullField("nextCursor");
+                }
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static void writeEntry(JsonGenerator json, HistoryEntry entry) {
+        try {
+            json.writeStartObject();
+            json.writeStringField("id", entry.id().toString());
+            json.writeStringField("role", entry.role().getValue());
+            json.writeStringField("content", entry.content());
+            json.writeStringField("createdAt", entry.createdAt().toString());
+            json.writeEndObject();
+        } catch (IOException e) {
+            // Client ngắt kết nối: dừng đọc các dòng còn lại
+            throw new UncheckedIOException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,184 @@
+package com.service.ai_agent.api;
+
+import com.service.ai_agent.agent.memory.BatchingVectorStoreWriter;
+import com.service.ai_agent.agent.memory.ConversationRetentionJob;
+import com.service.ai_agent.agent.memory.HybridContextRetriever;
+import com.service.ai_agent.agent.memory.SessionContextCache;
+import com.service.ai_agent.agent.memory.SessionSummaryMemory;
+import com.service.ai_agent.agent.prompt.CompiledPrompt;
+import com.service.ai_agent.agent.prompt.ContextAssembler;
+import com.service.ai_agent.agent.prompt.PromptRegistry;
+import com.service.ai_agent.agent.tools.MemoizingTool;
+import com.service.ai_agent.agent.tools.ToolMetrics;
+import com.service.ai_agent.agent.tools.ToolRegistry;
+import com.service.ai_agent.agent.workflow.orchestrator.SemanticResponseCache;
+import com.service.ai_agent.agent.workflow.route.IntentBasedRoutingWorkflow;
+import com.service.ai_agent.agent.workflow.route.SemanticRoutingWorkflow;
+import com.service.ai_agent.infrastructure.embedding.CachingEmbeddingModel;
+import com.service.ai_agent.infrastructure.laravel_api.LaravelHttpMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Endpoint nội bộ để xem các thống kê vận hành của agent (cache, ...),
+ * dùng để tinh chỉnh cấu hình theo traffic thực tế.
+ */
+@RestController
+@RequestMapping("/api/v1/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final SessionContextCache sessionContextCache;
+    private final SessionSummaryMemory sessionSummaryMemory;
+    private final HybridContextRetriever hybridContextRetriever;
+    private final BatchingVectorStoreWriter vectorStoreWriter;
+    private final ConversationRetentionJob retentionJob;
+    private final IntentBasedRoutingWorkflow intentBasedRoutingWorkflow;
+    // Chỉ có khi agent.routing.strategy=semantic
+    private final Optional<SemanticRoutingWorkflow> semanticRoutingWorkflow;
+    private final LaravelHttpMetrics laravelHttpMetrics;
+    private final ToolMetrics toolMetrics;
+    private final ToolRegistry toolRegistry;
+    private final SemanticResponseCache semanticResponseCache;
+    private final PromptRegistry promptRegistry;
+    private final ContextAssembler contextAssembler;
+    private final CachingEmbeddingModel cachingEmbeddingModel;
+
+    /**
+     * Thống kê cache context theo session: số entry, hit/miss, hit rate và số lần eviction.
+     */
+    @GetMapping("/session-context-cache")
+    public ResponseEntity<SessionContextCache.Stats> sessionContextCache() {
+        return ResponseEntity.ok(sessionContextCache.getStats());
+    }
+
+    /**
+     * Số route được quyết định bởi từng tầng của router: cache, bộ phân loại cục bộ, LLM.
+     */
+    @GetMapping("/routing")
+    public ResponseEntity<IntentBasedRoutingWorkflow.TierStats> routing() {
+        return ResponseEntity.ok(intentBasedRoutingWorkflow.getTierStats());
+    }
+
+    /**
+     * Số route được quyết định bằng embedding centroid và số lần phải chuyển cho router LLM.
+     */
+    @GetMapping("/routing/semantic")
+    public ResponseEntity<SemanticRoutingWorkflow.Stats> semanticRouting() {
+        return semanticRoutingWorkflow
+                .map(workflow -> ResponseEntity.ok(workflow.getStats()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Latency theo endpoint của các lời gọi tới Laravel Service, đọc từ timer laravel.http.client
+     * (histogram theo bucket có ở /actuator/prometheus).
+     */
+    @GetMapping("/laravel-http/endpoints")
+    public ResponseEntity<Map<String, LaravelHttpMetrics.EndpointStats>> laravelHttpEndpoints() {
+        return ResponseEntity.ok(laravelHttpMetrics.getEndpointStats());
+    }
+
+    /**
+     * Mức sử dụng connection pool tới Laravel Service (chỉ có số liệu khi dùng pooled client).
+     */
+    @GetMapping("/laravel-http/pool")
+    public ResponseEntity<LaravelHttpMetrics.PoolUtilisation> laravelHttpPool() {
+        return ResponseEntity.ok(laravelHttpMetrics.getPoolUtilisation());
+    }
+
+    /**
+     * Latency theo tool (số lần lỗi, quá thời gian), đọc từ timer agent.tool.calls
+     * (histogram theo bucket có ở /actuator/prometheus).
+     */
+    @GetMapping("/tools")
+    public ResponseEntity<Map<String, ToolMetrics.ToolStats>> tools() {
+        return ResponseEntity.ok(toolMetrics.getToolStats());
+    }
+
+    /**
+     * Số lượt gọi tool, số lượt có nhiều tool chạy song song và thời gian tiết kiệm được so với chạy tuần tự.
+     */
+    @GetMapping("/tools/batches")
+    public ResponseEntity<ToolMetrics.BatchStats> toolBatches() {
+        return ResponseEntity.ok(toolMetrics.getBatchStats());
+    }
+
+    /**
+     * Cache kết quả của các tool idempotent: số entry, hit/miss theo tool.
+     */
+    @GetMapping("/tools/result-cache")
+    public ResponseEntity<Map<String, MemoizingTool.Stats>> toolResultCache() {
+        return ResponseEntity.ok(toolRegistry.getResultCacheStats());
+    }
+
+    /**
+     * Semantic cache câu trả lời: hit rate (trùng khớp / theo ngữ nghĩa) và latency ước lượng tiết kiệm được.
+     */
+    @GetMapping("/response-cache")
+    public ResponseEntity<SemanticResponseCache.Stats> responseCache() {
+        return ResponseEntity.ok(semanticResponseCache.getStats());
+    }
+
+    /**
+     * Theo từng prompt template: số lần render, thời gian render và tỉ lệ prefix tĩnh được dùng lại.
+     */
+    @GetMapping("/prompts")
+    public ResponseEntity<Map<String, CompiledPrompt.Stats>> prompts() {
+        return ResponseEntity.ok(promptRegistry.getStats());
+    }
+
+    /**
+     * Chế độ memory dạng tóm tắt: số lần gộp, số message đã gộp vào summary và số lần lỗi.
+     */
+    @GetMapping("/session-summary")
+    public ResponseEntity<SessionSummaryMemory.Stats> sessionSummary() {
+        return ResponseEntity.ok(sessionSummaryMemory.getStats());
+    }
+
+    /**
+     * Số token của prompt theo use case: trung bình, lớn nhất, token của từng phần và số token đã bị cắt để vừa ngân sách.
+     */
+    @GetMapping("/tokens")
+    public ResponseEntity<Map<String, ContextAssembler.TokenStats>> tokens() {
+        return ResponseEntity.ok(contextAssembler.getStats());
+    }
+
+    /**
+     * Retrieval dạng hybrid: số lời gọi embedding trên mỗi lần dựng context, số turn liên quan được thêm và số bị bỏ vì trùng.
+     */
+    @GetMapping("/memory-retrieval")
+    public ResponseEntity<HybridContextRetriever.Stats> memoryRetrieval() {
+        return ResponseEntity.ok(hybridContextRetriever.getStats());
+    }
+
+    /**
+     * Cache embedding theo nội dung: hit theo từng tầng (heap, file), số lời gọi model thực tế và số lời gọi tránh được.
+     */
+    @GetMapping("/embedding-cache")
+    public ResponseEntity<CachingEmbeddingModel.Stats> embeddingCache() {
+        return ResponseEntity.ok(cachingEmbeddingModel.getStats());
+    }
+
+    /**
+     * Ghi vector store theo lô: số document trung bình mỗi lô, số lần gọi VectorStore.add và các document ghi lỗi gần đây.
+     */
+    @GetMapping("/vector-writes")
+    public ResponseEntity<BatchingVectorStoreWriter.Stats> vectorWrites() {
+        return ResponseEntity.ok(vectorStoreWriter.getStats());
+    }
+
+    /**
+     * Retention của conversation_history: số partition đã tạo/bỏ, số dòng đã xóa theo chunk và thời gian lần chạy gần nhất.
+     */
+    @GetMapping("/retention")
+    public ResponseEntity<ConversationRetentionJob.Stats> retention() {
+        return ResponseEntity.ok(retentionJob.getStats());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.service.ai_agent.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Description;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@Slf4j
+public class ExecutorConfig {
+
+    /**
+     * Executor dùng chung cho các tác vụ blocking của agent (workflow, tool, gọi Laravel API, JPA).
+     * Khi bật spring.threads.virtual.enabled=true, mỗi tác vụ chạy trên một virtual thread riêng:
+     * thread bị chặn khi chờ OpenAI/HTTP/JDBC không giữ platform thread nào.
+     * Ngược lại dùng pool platform thread có giới hạn như trước.
+     *
+     * @param virtualThreads      Cùng cờ với Spring Boot (áp dụng cho cả Tomcat request threads).
+     * @param platformPoolSize    Số thread tối đa khi chạy ở chế độ platform thread.
+     * @param platformQueueCapacity Kích thước hàng đợi khi chạy ở chế độ platform thread.
+     */
+    @Bean(name = "agentTaskExecutor")
+    @Description("Executor cho các tác vụ blocking của agent, dùng virtual thread khi được bật.")
+    public AsyncTaskExecutor agentTaskExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${agent.executor.platform-pool-size:64}") int platformPoolSize,
+            @Value("${agent.executor.platform-queue-capacity:1000}") int platformQueueCapacity) {
+
+        if (virtualThreads) {
+            log.info("Agent task executor: virtual threads");
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("agent-vt-");
+            executor.setVirtualThreads(true);
+            // Chờ các tác vụ đang chạy kết thúc khi shutdown
+            executor.setTaskTerminationTimeout(30_000);
+            return executor;
+        }
+
+        log.info("Agent task executor: platform thread pool (max {} threads)", platformPoolSize);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("agent-");
+        executor.setCorePoolSize(platformPoolSize);
+        executor.setMaxPoolSize(platformPoolSize);
+        executor.setQueueCapacity(platformQueueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.service.ai_agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình HTTP transport cho LaravelApiClient.
+ * Timeout phản hồi được cấu hình riêng cho từng operation (đoạn path đầu tiên sau base URL):
+ * laravel.api.http.response-timeouts.websites=PT30S
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "laravel.api.http")
+public class LaravelHttpProperties {
+
+    // Dùng connection pool keep-alive (Apache HttpClient 5); false để quay về request factory mặc định
+    private boolean pooled = true;
+
+    private int maxConnectionsTotal = 100;
+
+    private int maxConnectionsPerRoute = 50;
+
+    private Duration connectTimeout = Duration.ofSeconds(3);
+
+    // Thời gian tối đa chờ lấy connection từ pool
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+
+    // Đóng connection nhàn rỗi quá thời gian này
+    private Duration idleEvictionTimeout = Duration.ofSeconds(30);
+
+    private Duration defaultResponseTimeout = Duration.ofSeconds(3);
+
+    private Map<String, Duration> responseTimeouts = new HashMap<>();
+
+    public Duration responseTimeoutFor(String operation) {
+        return responseTimeouts.getOrDefault(operation, defaultResponseTimeout);
+    }
+}
\ No newline at end of file
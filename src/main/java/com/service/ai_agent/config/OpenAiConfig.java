@@ -1,14 +1,20 @@
 package com.service.ai_agent.config;
 
+import com.service.ai_agent.agent.metrics.TokenUsageAdvisor;
+import com.service.ai_agent.agent.tools.ToolRegistry;
+import com.service.ai_agent.infrastructure.embedding.CachingEmbeddingModel;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Description;
 import org.springframework.context.annotation.Primary;
 
+import java.nio.file.Path;
+
 @Configuration
 public class OpenAiConfig {
 
@@ -16,28 +22,58 @@ public class OpenAiConfig {
      * Tạo một Bean ChatClient duy nhất cho toàn bộ ứng dụng, được cấu hình sẵn
      * để sử dụng tất cả các tool có trong hệ thống.
      *
+     * Khi LLM gọi nhiều tool trong một lượt, ConcurrentToolCallingManager chạy chúng song song.
+     *
      * @param chatModel    Bean ChatModel được Spring AI tự động cấu hình (ví dụ: OpenAiChatModel).
+     * @param toolRegistry Registry chứa tất cả các Tool bean.
+     * @param tokenUsageAdvisor Ghi số token của mỗi lời gọi vào Micrometer.
      * @return Một instance của ChatClient đã được "trang bị" đầy đủ các tool.
      */
     @Bean
+    @Primary
     @Description("ChatClient được cấu hình để có khả năng gọi hàm (Function Calling) với tất cả các tool đã đăng ký.")
-    public ChatClient functionCallingChatClient(ChatModel chatModel) {
+    public ChatClient functionCallingChatClient(ChatModel chatModel, ToolRegistry toolRegistry,
+                                                TokenUsageAdvisor tokenUsageAdvisor) {
 
         System.out.println("==================================================");
         System.out.println("Đang khởi tạo ChatClient với Spring AI 1.0.0");
         System.out.println("==================================================");
 
-        // Với Spring AI 1.0.0, sử dụng cách đơn giản hơn
-        return ChatClient.builder(chatModel).build();
+        return ChatClient.builder(chatModel)
+                .defaultToolCallbacks(toolRegistry.getToolCallbacks())
+                .defaultAdvisors(tokenUsageAdvisor)
+                .build();
+    }
+
+    /**
+     * ChatClient không đăng ký tool, cho các prompt không cần gọi tool (phân loại intent, tư vấn
+     * khi dữ liệu đã được lấy sẵn): không gửi kèm tool definition nên tốn ít token hơn.
+     */
+    @Bean
+    @Description("ChatClient không có tool, dùng cho các prompt không cần Function Calling.")
+    public ChatClient plainChatClient(ChatModel chatModel, TokenUsageAdvisor tokenUsageAdvisor) {
+        return ChatClient.builder(chatModel)
+                .defaultAdvisors(tokenUsageAdvisor)
+                .build();
     }
 
     /**
-     * Chỉ định OpenAI embedding model là primary để tránh conflict
+     * Chỉ định OpenAI embedding model là primary để tránh conflict.
+     * Được bọc cache theo nội dung (heap LRU + file memory-mapped), vector store và các cache ngữ nghĩa
+     * dùng chung bean này nên cùng một chuỗi chỉ được embed một lần.
      */
     @Bean
     @Primary
-    @Description("Primary embedding model sử dụng OpenAI")
-    public EmbeddingModel primaryEmbeddingModel(@Qualifier("openAiEmbeddingModel") EmbeddingModel openAiEmbeddingModel) {
-        return openAiEmbeddingModel;
+    @Description("Primary embedding model sử dụng OpenAI, có cache vector theo nội dung")
+    public CachingEmbeddingModel primaryEmbeddingModel(
+            @Qualifier("openAiEmbeddingModel") EmbeddingModel openAiEmbeddingModel,
+            @Value("${spring.ai.openai.embedding.options.model:text-embedding-3-small}") String model,
+            @Value("${agent.embedding-cache.enabled:true}") boolean enabled,
+            @Value("${agent.embedding-cache.heap-max-entries:10000}") long heapMaxEntries,
+            @Value("${agent.embedding-cache.file:}") String file,
+            @Value("${agent.embedding-cache.file-max-entries:50000}") int fileMaxEntries) {
+        // Tắt cache: không giữ entry nào, mọi lời gọi đi thẳng tới model
+        return new CachingEmbeddingModel(openAiEmbeddingModel, model, enabled ? heapMaxEntries : 0,
+                enabled && !file.isBlank() ? Path.of(file) : null, fileMaxEntries);
     }
 }
\ No newline at end of file
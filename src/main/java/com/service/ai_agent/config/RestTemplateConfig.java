@@ -1,21 +1,85 @@
 package com.service.ai_agent.config;
 
+import com.service.ai_agent.infrastructure.laravel_api.LaravelHttpMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
 
 @Configuration
+@Slf4j
 public class RestTemplateConfig {
 
+    /**
+     * HttpClient dùng connection pool keep-alive cho Laravel Service,
+     * tránh phải bắt tay TCP cho mỗi lần gọi tool.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "laravel.api.http.pooled", havingValue = "true", matchIfMissing = true)
+    public CloseableHttpClient laravelHttpClient(LaravelHttpProperties properties, LaravelHttpMetrics metrics) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnectionsTotal())
+                .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        metrics.bindConnectionManager(connectionManager);
+
+        log.info("Laravel HTTP client: pooled (max {} connections, {} per route)",
+                properties.getMaxConnectionsTotal(), properties.getMaxConnectionsPerRoute());
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleEvictionTimeout()))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     ObjectProvider<CloseableHttpClient> laravelHttpClient,
+                                     LaravelHttpProperties properties,
+                                     LaravelHttpMetrics metrics) {
+        CloseableHttpClient httpClient = laravelHttpClient.getIfAvailable();
+        if (httpClient == null) {
+            return builder
+                // Thiết lập timeout cho việc kết nối đến server
+                .connectTimeout(Duration.ofMillis(3000))
+                .readTimeout(Duration.ofMillis(3000))
+                .additionalInterceptors(metrics)
+                .build();
+        }
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        // Timeout phản hồi riêng cho từng operation: đọc catalog thì ngắn, tạo website thì dài hơn
+        requestFactory.setHttpContextFactory((httpMethod, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+                    .setResponseTimeout(Timeout.of(properties.responseTimeoutFor(metrics.operationOf(uri))))
+                    .build());
+            return context;
+        });
+
         return builder
-            // Thiết lập timeout cho việc kết nối đến server
-            .connectTimeout(Duration.ofMillis(3000))
-            .readTimeout(Duration.ofMillis(3000))
-            .build();
+                .requestFactory(() -> requestFactory)
+                .additionalInterceptors(metrics)
+                .build();
     }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import java.util.UUID;
     @Index(name = "idx_conversation_tenant_user", columnList = "tenant_id, user_id"),
     @Index(name = "idx_conversation_session", columnList = "session_id"),
     @Index(name = "idx_conversation_created", columnList = "created_at"),
+    @Index(name = "idx_conversation_tenant_request_type", columnList = "tenant_id, request_type, created_at"),
     @Index(name = "idx_conversation_metadata", columnList = "metadata")
 })
 public class ConversationHistory {
@@ -46,7 +47,17 @@ public class ConversationHistory {
     @Column(columnDefinition = "TEXT", nullable = false, updatable = false)
     private String content;
 
-    // Sử dụng JSONB thay vì ElementCollection để đơn giản hóa
+    // Các key hay được truy vấn là cột riêng có index B-tree, không nằm trong metadata
+    @Column(name = "request_type", updatable = false, length = 30)
+    @Enumerated(EnumType.STRING)
+    private RequestType requestType;
+
+    @Column(name = "message_type", updatable = false, length = 30)
+    @Enumerated(EnumType.STRING)
+    private MessageType messageType;
+
+    // Sử dụng JSONB thay vì ElementCollection để đơn giản hóa.
+    // Chỉ chứa các giá trị tự do; không lặp lại tenant/user/session hay thời điểm tạo đã có ở cột riêng
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "metadata", columnDefinition = "jsonb")
     @Builder.Default
@@ -104,6 +115,40 @@ public class ConversationHistory {
         return metadata != null && metadata.containsKey(key);
     }
 
+    // Loại yêu cầu của user message, phân loại theo nội dung
+    public enum RequestType {
+        CREATION_REQUEST("creation_request"),
+        PRICING_INQUIRY("pricing_inquiry"),
+        TEMPLATE_INQUIRY("template_inquiry"),
+        GENERAL_INQUIRY("general_inquiry");
+
+        private final String value;
+
+        RequestType(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public enum MessageType {
+        USER_INPUT("user_input"),
+        AI_RESPONSE("ai_response"),
+        SYSTEM_MESSAGE("system_message");
+
+        private final String value;
+
+        MessageType(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
     // Enum for conversation roles
     public enum ConversationRole {
         USER("user"),
@@ -0,0 +1,59 @@
+package com.service.ai_agent.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Bản tóm tắt tăng dần của một session: các turn cũ hơn summarizedUntil đã được gộp vào summary,
+ * context chỉ cần summary cộng các turn mới hơn mốc này.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "conversation_summary", uniqueConstraints = {
+    @UniqueConstraint(name = "uq_conversation_summary_session", columnNames = {"tenant_id", "session_id"})
+})
+public class ConversationSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "tenant_id", nullable = false, updatable = false, length = 100)
+    private String tenantId;
+
+    @Column(name = "session_id", nullable = false, updatable = false, length = 100)
+    private String sessionId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String summary;
+
+    // created_at của turn mới nhất đã được gộp vào summary
+    @Column(name = "summarized_until", nullable = false)
+    private Instant summarizedUntil;
+
+    // Tổng số message đã được gộp vào summary
+    @Column(name = "summarized_count", nullable = false)
+    private long summarizedCount;
+
+    // Tránh hai node cùng ghi đè summary của một session
+    @Version
+    private long version;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = Instant.now();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.service.ai_agent.infrastructure.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bọc EmbeddingModel: vector được cache theo SHA-256 của (tên model, nội dung), nên cùng một chuỗi
+ * (lời chào, câu trả lời giá giống nhau, retry...) chỉ phải embed một lần.
+ *
+ * Hai tầng: LRU trên heap cho các chuỗi nóng, và file memory-mapped (MappedEmbeddingFile) giữ được qua restart.
+ * Trong một request, chỉ các chuỗi chưa có trong cache được gửi tới model, gộp trong một lời gọi.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private final EmbeddingModel delegate;
+    private final String defaultModel;
+    private final Cache<String, float[]> heap;
+    // null: tắt tầng đĩa
+    private final MappedEmbeddingFile file;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder fileHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder apiCalls = new LongAdder();
+    private final LongAdder apiCallsAvoided = new LongAdder();
+
+    /**
+     * @param apiCalls Số lời gọi thực sự tới model.
+     * @param apiCallsAvoided Số request được trả hoàn toàn từ cache, không gọi model.
+     */
+    public record Stats(long heapEntries, long fileEntries, long lookups, long heapHits, long fileHits, long misses,
+                        double hitRate, long apiCalls, long apiCallsAvoided) {}
+
+    /**
+     * @param file Đường dẫn file cache trên đĩa, null để chỉ dùng heap.
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String defaultModel, long heapMaxEntries,
+                                 Path file, int fileMaxEntries) {
+        this.delegate = delegate;
+        this.defaultModel = defaultModel;
+        this.heap = Caffeine.newBuilder()
+                .maximumSize(heapMaxEntries)
+                .build();
+        this.file = file != null ? new MappedEmbeddingFile(file, fileMaxEntries) : null;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        String model = request.getOptions() != null && request.getOptions().getModel() != null
+                ? request.getOptions().getModel() : defaultModel;
+        List<String> texts = request.getInstructions();
+        float[][] vectors = new float[texts.size()][];
+
+        // Các chuỗi chưa có trong cache, bỏ trùng trong cùng request
+        Map<String, byte[]> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            lookups.increment();
+            byte[] key = key(model, texts.get(i));
+            vectors[i] = lookup(key);
+            if (vectors[i] == null) {
+                misses.increment();
+                missing.putIfAbsent(texts.get(i), key);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            apiCallsAvoided.increment();
+        } else {
+            List<String> toEmbed = new ArrayList<>(missing.keySet());
+            apiCalls.increment();
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(toEmbed, request.getOptions()));
+            // Thiếu vector thì không biết chuỗi nào chưa được embed: báo lỗi thay vì trả embedding null
+            if (response.getResults().size() != toEmbed.size()) {
+                throw new IllegalStateException("Embedding model returned " + response.getResults().size()
+                        + " embeddings for " + toEmbed.size() + " inputs");
+            }
+            // Không có hit nào: trả nguyên response của model (giữ metadata usage)
+            if (toEmbed.size() == texts.size()) {
+                store(toEmbed, missing, response);
+                return response;
+            }
+            Map<String, float[]> embedded = store(toEmbed, missing, response);
+            for (int i = 0; i < texts.size(); i++) {
+                if (vectors[i] == null) {
+                    vectors[i] = embedded.get(texts.get(i));
+                }
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public Stats getStats() {
+        long lookupCount = lookups.sum();
+        long hits = heapHits.sum() + fileHits.sum();
+        return new Stats(heap.estimatedSize(), file != null ? file.size() : 0, lookupCount, heapHits.sum(),
+                fileHits.sum(), misses.sum(), lookupCount > 0 ? (double) hits / lookupCount : 0,
+                apiCalls.sum(), apiCallsAvoided.sum());
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private float[] lookup(byte[] key) {
+        String hex = HexFormat.of().formatHex(key);
+        float[] vector = heap.getIfPresent(hex);
+        if (vector != null) {
+            heapHits.increment();
+            return vector.clone();
+        }
+        vector = file != null ? file.get(key) : null;
+        if (vector != null) {
+            fileHits.increment();
+            heap.put(hex, vector);
+            return vector.clone();
+        }
+        return null;
+    }
+
+    private Map<String, float[]> store(List<String> texts, Map<String, byte[]> keys, EmbeddingResponse response) {
+        Map<String, float[]> embedded = new LinkedHashMap<>();
+        List<Embedding> results = response.getResults();
+        for (int i = 0; i < results.size() && i < texts.size(); i++) {
+            Embedding embedding = results.get(i);
+            int index = embedding.getIndex() != null ? embedding.getIndex() : i;
+            String text = texts.get(index);
+            float[] vector = embedding.getOutput();
+            embedded.put(text, vector);
+            // Lưu bản sao để người gọi có sửa mảng trả về cũng không ảnh hưởng cache
+            byte[] key = keys.get(text);
+            heap.put(HexFormat.of().formatHex(key), vector.clone());
+            if (file != null) {
+                file.put(key, vector);
+            }
+        }
+        return embedded;
+    }
+
+    private static byte[] key(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return digest.digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.service.ai_agent.infrastructure.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tầng lưu embedding trên đĩa, memory-mapped: giữ được qua các lần restart và không chiếm heap.
+ *
+ * File gồm header cố định rồi tới capacity slot, mỗi slot là [32 byte hash của key][dimensions float32].
+ * Vector được lưu dạng mảng float liền nhau, đọc thẳng từ vùng nhớ đã map. Khi đầy, slot cũ nhất
+ * bị ghi đè (ring buffer). Chỉ index hash -> slot nằm trên heap, được dựng lại từ file khi khởi động.
+ */
+@Slf4j
+class MappedEmbeddingFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x454D4231;
+    // magic, dimensions, capacity, count, nextSlot
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    static final int KEY_BYTES = 32;
+
+    private final Path path;
+    private final int capacity;
+    private final Map<String, Integer> index = new ConcurrentHashMap<>();
+
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int dimensions;
+    private int recordBytes;
+    private int count;
+    private int nextSlot;
+
+    MappedEmbeddingFile(Path path, int capacity) {
+        this.path = path;
+        this.capacity = capacity;
+        try {
+            if (Files.exists(path)) {
+                load();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Embedding cache file {} is unreadable, starting empty: {}", path, e.getMessage());
+            closeQuietly();
+            index.clear();
+        }
+    }
+
+    /**
+     * Vector đã lưu cho key, null nếu chưa có.
+     */
+    float[] get(byte[] key) {
+        Integer slot = index.get(HexFormat.of().formatHex(key));
+        MappedByteBuffer mapped = buffer;
+        if (slot == null || mapped == null) {
+            return null;
+        }
+        int offset = HEADER_BYTES + slot * recordBytes;
+        float[] vector = new float[dimensions];
+        mapped.slice(offset + KEY_BYTES, dimensions * Float.BYTES).asFloatBuffer().get(vector);
+        // Slot có thể vừa bị ghi đè bởi key khác trong lúc đọc
+        return Arrays.equals(readKey(mapped, offset), key) ? vector : null;
+    }
+
+    synchronized void put(byte[] key, float[] vector) {
+        try {
+            if (buffer == null) {
+                create(vector.length);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to create embedding cache file {}: {}", path, e.getMessage());
+            return;
+        }
+        if (vector.length != dimensions) {
+            log.debug("Skipping embedding with {} dimensions, cache file has {}", vector.length, dimensions);
+            return;
+        }
+        String hex = HexFormat.of().formatHex(key);
+        if (index.containsKey(hex)) {
+            return;
+        }
+
+        int slot = nextSlot;
+        int offset = HEADER_BYTES + slot * recordBytes;
+        if (count == capacity) {
+            // Ring buffer đã đầy: bỏ key cũ của slot này khỏi index
+            index.remove(HexFormat.of().formatHex(readKey(buffer, offset)), slot);
+        }
+        buffer.put(offset, key);
+        buffer.slice(offset + KEY_BYTES, dimensions * Float.BYTES).asFloatBuffer().put(vector);
+        index.put(hex, slot);
+
+        nextSlot = (slot + 1) % capacity;
+        count = Math.min(count + 1, capacity);
+        buffer.putInt(3 * Integer.BYTES, count);
+        buffer.putInt(4 * Integer.BYTES, nextSlot);
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (buffer != null) {
+            buffer.force();
+        }
+        closeQuietly();
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("not an embedding cache file");
+        }
+        int fileDimensions = header.getInt();
+        int fileCapacity = header.getInt();
+        if (fileCapacity != capacity) {
+            // Đổi capacity thì bắt đầu lại, embedding sẽ được cache lại dần
+            closeQuietly();
+            Files.delete(path);
+            log.info("Embedding cache capacity changed ({} -> {}), recreating {}", fileCapacity, capacity, path);
+            return;
+        }
+        map(fileDimensions);
+        count = buffer.getInt(3 * Integer.BYTES);
+        nextSlot = buffer.getInt(4 * Integer.BYTES);
+        for (int slot = 0; slot < count; slot++) {
+            index.put(HexFormat.of().formatHex(readKey(buffer, HEADER_BYTES + slot * recordBytes)), slot);
+        }
+        log.info("Loaded {} cached embeddings ({} dimensions) from {}", index.size(), dimensions, path);
+    }
+
+    private void create(int vectorDimensions) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        map(vectorDimensions);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(Integer.BYTES, dimensions);
+        buffer.putInt(2 * Integer.BYTES, capacity);
+        buffer.putInt(3 * Integer.BYTES, 0);
+        buffer.putInt(4 * Integer.BYTES, 0);
+        count = 0;
+        nextSlot = 0;
+        log.info("Created embedding cache file {} for {} vectors of {} dimensions", path, capacity, dimensions);
+    }
+
+    private void map(int vectorDimensions) throws IOException {
+        dimensions = vectorDimensions;
+        recordBytes = KEY_BYTES + dimensions * Float.BYTES;
+        long size = HEADER_BYTES + (long) capacity * recordBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("capacity " + capacity + " exceeds the 2 GB mapping limit");
+        }
+        // File thưa: chỉ các slot đã ghi mới thực sự chiếm đĩa
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static byte[] readKey(MappedByteBuffer mapped, int offset) {
+        byte[] key = new byte[KEY_BYTES];
+        mapped.get(offset, key);
+        return key;
+    }
+
+    private void closeQuietly() {
+        buffer = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Không còn gì để làm
+            }
+            channel = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.service.ai_agent.infrastructure.laravel_api;
+
+/**
+ * Được phát khi nội dung một catalog (giao diện, gói giá) thay đổi, hoặc khi Laravel báo catalog
+ * vừa thay đổi qua invalidate(). Các cache chứa dữ liệu suy ra từ catalog lắng nghe event này để xóa entry cũ.
+ * @param catalog LaravelCatalogCache.TEMPLATES hoặc LaravelCatalogCache.PRICING_PLANS
+ */
+public record CatalogChangedEvent(String catalog) {}
\ No newline at end of file
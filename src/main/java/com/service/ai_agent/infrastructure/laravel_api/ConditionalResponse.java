@@ -0,0 +1,14 @@
+package com.service.ai_agent.infrastructure.laravel_api;
+
+/**
+ * Kết quả của một conditional GET (If-None-Match) tới Laravel Service.
+ * @param body Dữ liệu mới, null nếu server trả về 304 Not Modified.
+ * @param etag ETag hiện tại của tài nguyên (có thể null nếu server không hỗ trợ).
+ * @param notModified true nếu dữ liệu không đổi so với ETag đã gửi.
+ */
+public record ConditionalResponse<T>(T body, String etag, boolean notModified) {
+
+    public static <T> ConditionalResponse<T> notModified(String etag) {
+        return new ConditionalResponse<>(null, etag, true);
+    }
+}
\ No newline at end of file
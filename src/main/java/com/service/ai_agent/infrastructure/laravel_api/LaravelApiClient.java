@@ -6,6 +6,11 @@ import com.service.ai_agent.infrastructure.laravel_api.dto.WebsiteCreationReques
 import com.service.ai_agent.infrastructure.laravel_api.dto.WebsiteCreationResponseDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
@@ -59,6 +64,38 @@ public class LaravelApiClient {
         }
     }
 
+    /**
+     * Conditional GET danh sách giao diện, dùng cho catalog cache.
+     * Khác với getAvailableTemplates(), lỗi được ném ra để caller quyết định có dùng dữ liệu cũ hay không.
+     * @param etag ETag của lần lấy trước, null nếu chưa có.
+     */
+    public ConditionalResponse<List<TemplateDTO>> fetchTemplates(String etag) {
+        return conditionalGet(laravelApiBaseUrl + "/templates", etag, TemplateDTO[].class);
+    }
+
+    /**
+     * Conditional GET danh sách gói giá, dùng cho catalog cache.
+     * @param etag ETag của lần lấy trước, null nếu chưa có.
+     */
+    public ConditionalResponse<List<PricingPlanDTO>> fetchPricingPlans(String etag) {
+        return conditionalGet(laravelApiBaseUrl + "/pricing-plans", etag, PricingPlanDTO[].class);
+    }
+
+    private <T> ConditionalResponse<List<T>> conditionalGet(String url, String etag, Class<T[]> responseType) {
+        log.info("Calling Laravel API (If-None-Match: {}): {}", etag, url);
+        HttpHeaders headers = new HttpHeaders();
+        if (etag != null) {
+            headers.setIfNoneMatch(etag);
+        }
+        ResponseEntity<T[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), responseType);
+        if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            return ConditionalResponse.notModified(etag);
+        }
+        T[] body = response.getBody();
+        return new ConditionalResponse<>(body != null ? Arrays.asList(body) : Collections.emptyList(),
+                response.getHeaders().getETag(), false);
+    }
+
     // ... (restTemplate, baseUrl, constructor, và các phương thức cũ)
 
     /**
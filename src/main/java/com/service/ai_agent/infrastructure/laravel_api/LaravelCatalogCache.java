@@ -0,0 +1,269 @@
+package com.service.ai_agent.infrastructure.laravel_api;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.ai_agent.infrastructure.laravel_api.dto.PricingPlanDTO;
+import com.service.ai_agent.infrastructure.laravel_api.dto.TemplateDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cache cho catalog (giao diện, gói giá) lấy từ Laravel Service.
+ * - Refresh-ahead: entry sắp hết hạn và đang được dùng sẽ được làm mới ở nền trước khi hết hạn.
+ * - Revalidate bằng ETag/If-None-Match: catalog không đổi thì Laravel chỉ trả 304.
+ * - Serve-stale-on-error: Laravel lỗi thì tiếp tục trả dữ liệu cũ, thử lại sau một khoảng backoff.
+ * - Snapshot ra đĩa sau mỗi lần lấy thành công, node mới khởi động hoặc Laravel đang lỗi vẫn trả lời được.
+ * - invalidate(): hook để Laravel báo catalog vừa thay đổi.
+ * Mỗi khi nội dung catalog thay đổi, CatalogChangedEvent được phát cho các cache phía sau.
+ */
+@Component
+@Slf4j
+public class LaravelCatalogCache {
+
+    public static final String TEMPLATES = "templates";
+    public static final String PRICING_PLANS = "pricing-plans";
+
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AsyncTaskExecutor executor;
+    private final Duration ttl;
+    private final Duration refreshAhead;
+    private final Duration errorBackoff;
+    private final Path snapshotDir;
+
+    private final CatalogEntry<TemplateDTO> templates;
+    private final CatalogEntry<PricingPlanDTO> pricingPlans;
+    private final Map<String, CatalogEntry<?>> entries;
+
+    /**
+     * Dữ liệu của một catalog tại một thời điểm, cũng là định dạng file snapshot trên đĩa.
+     */
+    record Snapshot<T>(List<T> items, String etag, Instant fetchedAt) {}
+
+    public LaravelCatalogCache(LaravelApiClient laravelApiClient,
+                               ObjectMapper objectMapper,
+                               ApplicationEventPublisher eventPublisher,
+                               @Qualifier("agentTaskExecutor") AsyncTaskExecutor executor,
+                               @Value("${agent.catalog.ttl:PT10M}") Duration ttl,
+                               @Value("${agent.catalog.refresh-ahead:PT2M}") Duration refreshAhead,
+                               @Value("${agent.catalog.error-backoff:PT30S}") Duration errorBackoff,
+                               @Value("${agent.catalog.snapshot-dir:}") String snapshotDir) {
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.executor = executor;
+        this.ttl = ttl;
+        this.refreshAhead = refreshAhead;
+        this.errorBackoff = errorBackoff;
+        this.snapshotDir = snapshotDir.isBlank() ? null : Path.of(snapshotDir);
+        this.templates = new CatalogEntry<>(TEMPLATES, TemplateDTO.class, laravelApiClient::fetchTemplates);
+        this.pricingPlans = new CatalogEntry<>(PRICING_PLANS, PricingPlanDTO.class, laravelApiClient::fetchPricingPlans);
+        this.entries = Map.of(TEMPLATES, templates, PRICING_PLANS, pricingPlans);
+    }
+
+    public List<TemplateDTO> getTemplates() {
+        return templates.get();
+    }
+
+    public List<PricingPlanDTO> getPricingPlans() {
+        return pricingPlans.get();
+    }
+
+    /**
+     * Đánh dấu catalog đã thay đổi và làm mới ở nền. Dữ liệu cũ vẫn được trả về cho đến khi lấy xong.
+     * @param catalog TEMPLATES hoặc PRICING_PLANS
+     * @return false nếu tên catalog không tồn tại
+     */
+    public boolean invalidate(String catalog) {
+        CatalogEntry<?> entry = entries.get(catalog);
+        if (entry == null) {
+            return false;
+        }
+        entry.invalidate();
+        return true;
+    }
+
+    @PostConstruct
+    void loadSnapshots() {
+        entries.values().forEach(CatalogEntry::loadSnapshot);
+    }
+
+    /**
+     * Refresh-ahead: làm mới ở nền các catalog đang được dùng và sắp hết hạn.
+     */
+    @Scheduled(fixedDelayString = "${agent.catalog.refresh-check-interval:PT30S}")
+    public void refreshAhead() {
+        entries.values().forEach(CatalogEntry::refreshAheadIfNeeded);
+    }
+
+    private class CatalogEntry<T> {
+
+        private final String name;
+        private final Class<T> type;
+        private final Function<String, ConditionalResponse<List<T>>> fetcher;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile Snapshot<T> snapshot;
+        private volatile boolean accessedSinceRefresh;
+        private volatile Instant retryNotBefore = Instant.EPOCH;
+
+        CatalogEntry(String name, Class<T> type, Function<String, ConditionalResponse<List<T>>> fetcher) {
+            this.name = name;
+            this.type = type;
+            this.fetcher = fetcher;
+        }
+
+        List<T> get() {
+            accessedSinceRefresh = true;
+            Snapshot<T> current = snapshot;
+            // Còn hạn, hoặc Laravel vừa lỗi: trả dữ liệu đang có (có thể rỗng), không để mọi request phải chờ timeout
+            if (isFresh(current) || inBackoff()) {
+                return itemsOf(current);
+            }
+
+            // Hết hạn hoặc chưa có: làm mới đồng bộ, các request đồng thời chờ cùng một lần gọi.
+            // ReentrantLock thay vì synchronized để virtual thread đang chờ không giữ chặt carrier thread
+            lock.lock();
+            try {
+                // Kiểm tra lại sau khi có lock: request trước có thể vừa làm mới xong, hoặc vừa lỗi và đặt backoff
+                current = snapshot;
+                if (!isFresh(current) && !inBackoff()) {
+                    refresh();
+                    current = snapshot;
+                }
+            } finally {
+                lock.unlock();
+            }
+            return itemsOf(current);
+        }
+
+        void invalidate() {
+            Snapshot<T> current = snapshot;
+            if (current != null) {
+                snapshot = new Snapshot<>(current.items(), current.etag(), Instant.EPOCH);
+            }
+            retryNotBefore = Instant.EPOCH;
+            log.info("Catalog {} invalidated, refreshing in background", name);
+            // Dữ liệu suy ra từ catalog cũ không còn đáng tin, kể cả khi lần làm mới chưa xong
+            eventPublisher.publishEvent(new CatalogChangedEvent(name));
+            refreshAsync();
+        }
+
+        void refreshAheadIfNeeded() {
+            Snapshot<T> current = snapshot;
+            if (current != null && accessedSinceRefresh
+                    && Instant.now().isAfter(expiresAt(current).minus(refreshAhead))) {
+                refreshAsync();
+            }
+        }
+
+        private Instant expiresAt(Snapshot<T> current) {
+            return current.fetchedAt().plus(ttl);
+        }
+
+        private boolean isFresh(Snapshot<T> current) {
+            return current != null && Instant.now().isBefore(expiresAt(current));
+        }
+
+        private boolean inBackoff() {
+            return Instant.now().isBefore(retryNotBefore);
+        }
+
+        private List<T> itemsOf(Snapshot<T> current) {
+            return current != null ? current.items() : Collections.emptyList();
+        }
+
+        private void refreshAsync() {
+            if (refreshing.compareAndSet(false, true)) {
+                executor.execute(() -> {
+                    try {
+                        lock.lock();
+                        try {
+                            refresh();
+                        } finally {
+                            lock.unlock();
+                        }
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            }
+        }
+
+        private void refresh() {
+            Snapshot<T> current = snapshot;
+            try {
+                ConditionalResponse<List<T>> response = fetcher.apply(current != null ? current.etag() : null);
+                if (response.notModified() && current != null) {
+                    snapshot = new Snapshot<>(current.items(), current.etag(), Instant.now());
+                    log.debug("Catalog {} not modified (etag: {})", name, current.etag());
+                } else {
+                    List<T> items = response.body() != null ? List.copyOf(response.body()) : List.of();
+                    snapshot = new Snapshot<>(items, response.etag(), Instant.now());
+                    writeSnapshot(snapshot);
+                    log.info("Catalog {} refreshed: {} items (etag: {})", name, items.size(), response.etag());
+                    if (current != null && !items.equals(current.items())) {
+                        eventPublisher.publishEvent(new CatalogChangedEvent(name));
+                    }
+                }
+                accessedSinceRefresh = false;
+                retryNotBefore = Instant.EPOCH;
+            } catch (Exception e) {
+                retryNotBefore = Instant.now().plus(errorBackoff);
+                log.warn("Failed to refresh catalog {}, serving {} data: {}",
+                        name, current != null ? "stale" : "no", e.getMessage());
+            }
+        }
+
+        private Path snapshotFile() {
+            return snapshotDir.resolve(name + ".json");
+        }
+
+        private void writeSnapshot(Snapshot<T> data) {
+            if (snapshotDir == null) {
+                return;
+            }
+            try {
+                Files.createDirectories(snapshotDir);
+                Path tmp = Files.createTempFile(snapshotDir, name, ".tmp");
+                objectMapper.writeValue(tmp.toFile(), data);
+                Files.move(tmp, snapshotFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("Failed to write catalog snapshot {}: {}", name, e.getMessage());
+            }
+        }
+
+        void loadSnapshot() {
+            if (snapshotDir == null || !Files.exists(snapshotFile())) {
+                return;
+            }
+            try {
+                JavaType snapshotType = objectMapper.getTypeFactory().constructParametricType(Snapshot.class, type);
+                snapshot = objectMapper.readValue(snapshotFile().toFile(), snapshotType);
+                log.info("Loaded catalog snapshot {} ({} items, fetched at {})",
+                        name, snapshot.items().size(), snapshot.fetchedAt());
+            } catch (IOException e) {
+                log.warn("Failed to read catalog snapshot {}: {}", name, e.getMessage());
+            }
+        }
+    }
+}
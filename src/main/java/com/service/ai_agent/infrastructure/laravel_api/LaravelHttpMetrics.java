@@ -0,0 +1,114 @@
+package com.service.ai_agent.infrastructure.laravel_api;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics cho các lời gọi tới Laravel Service: latency theo endpoint và mức sử dụng connection pool.
+ * Endpoint được xác định bằng method + operation (đoạn path đầu tiên sau base URL),
+ * nên số lượng key luôn nhỏ và cố định. Latency chỉ được ghi một lần, vào timer laravel.http.client (Micrometer);
+ * getEndpointStats() đọc lại từ timer đó.
+ */
+@Component
+public class LaravelHttpMetrics implements ClientHttpRequestInterceptor {
+
+    private static final String TIMER = "laravel.http.client";
+
+    private final String basePath;
+    private final MeterRegistry meterRegistry;
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * @param maxMillis Giá trị lớn nhất trong cửa sổ gần đây của timer (không phải từ lúc khởi động).
+     */
+    public record EndpointStats(long count, long errors, double meanMillis, double maxMillis) {}
+
+    public record PoolUtilisation(int leased, int available, int pending, int max, double utilisation) {}
+
+    public LaravelHttpMetrics(@Value("${laravel.api.base-url}") String laravelApiBaseUrl, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        String path = URI.create(laravelApiBaseUrl).getPath();
+        this.basePath = path == null ? "" : path.replaceAll("/$", "");
+    }
+
+    /**
+     * Đăng ký connection pool để báo cáo mức sử dụng (chỉ có khi dùng pooled client).
+     */
+    public void bindConnectionManager(PoolingHttpClientConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Operation của một request tới Laravel: đoạn path đầu tiên sau base URL (ví dụ "templates", "websites").
+     */
+    public String operationOf(URI uri) {
+        String path = uri.getPath() != null ? uri.getPath() : "";
+        if (path.startsWith(basePath)) {
+            path = path.substring(basePath.length());
+        }
+        path = path.startsWith("/") ? path.substring(1) : path;
+        int slash = path.indexOf('/');
+        return slash >= 0 ? path.substring(0, slash) : path;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String operation = operationOf(request.getURI());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            failed = response.getStatusCode().isError();
+            return response;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            Timer.builder(TIMER)
+                    .description("Latency of calls to the Laravel API")
+                    .tag("method", request.getMethod().name())
+                    .tag("operation", operation)
+                    .tag("outcome", failed ? "error" : "success")
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public Map<String, EndpointStats> getEndpointStats() {
+        Map<String, EndpointStats> stats = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(TIMER).timers()) {
+            String endpoint = timer.getId().getTag("method") + " /" + timer.getId().getTag("operation");
+            boolean error = "error".equals(timer.getId().getTag("outcome"));
+            EndpointStats current = stats.getOrDefault(endpoint, new EndpointStats(0, 0, 0, 0));
+            long count = current.count() + timer.count();
+            double totalMillis = current.meanMillis() * current.count() + timer.totalTime(TimeUnit.MILLISECONDS);
+            stats.put(endpoint, new EndpointStats(count, current.errors() + (error ? timer.count() : 0),
+                    count > 0 ? totalMillis / count : 0, Math.max(current.maxMillis(), timer.max(TimeUnit.MILLISECONDS))));
+        }
+        return stats;
+    }
+
+    public PoolUtilisation getPoolUtilisation() {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        if (manager == null) {
+            return new PoolUtilisation(0, 0, 0, 0, 0);
+        }
+        PoolStats total = manager.getTotalStats();
+        double utilisation = total.getMax() > 0 ? (double) total.getLeased() / total.getMax() : 0;
+        return new PoolUtilisation(total.getLeased(), total.getAvailable(), total.getPending(), total.getMax(),
+                utilisation);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+-- AI Agent Database Migration - Rolling conversation summary
+-- Version: V2
+-- Description: Per-session running summary used by the summary memory mode (agent.memory.mode=summary)
+
+CREATE TABLE IF NOT EXISTS conversation_summary (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    tenant_id VARCHAR(100) NOT NULL,
+    session_id VARCHAR(100) NOT NULL,
+    summary TEXT NOT NULL,
+    summarized_until TIMESTAMP WITH TIME ZONE NOT NULL,
+    summarized_count BIGINT NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+
+    CONSTRAINT uq_conversation_summary_session UNIQUE (tenant_id, session_id)
+);
+
+COMMENT ON TABLE conversation_summary IS 'Rolling per-session summary: turns older than summarized_until are folded into summary';
+COMMENT ON COLUMN conversation_summary.summarized_until IS 'created_at of the newest conversation_history row folded into the summary';
@@ -0,0 +1,203 @@
+-- AI Agent Database Migration - Time-partitioned conversation_history
+-- Version: V3
+-- Description: Range-partition conversation_history by month on created_at (optionally sub-partitioned by tenant hash),
+--              so retention drops whole partitions instead of running row-by-row DELETEs
+
+-- =============================================================================
+-- 1. PARTITION MANAGEMENT FUNCTION
+-- =============================================================================
+
+-- Create the monthly partition containing p_month (UTC bounds) if it does not exist yet.
+-- p_tenant_buckets > 0 sub-partitions the month by HASH(tenant_id) into that many tables.
+CREATE OR REPLACE FUNCTION create_conversation_history_partition(
+    p_month DATE,
+    p_tenant_buckets INTEGER DEFAULT 0
+)
+RETURNS TEXT AS $$
+DECLARE
+    v_start TIMESTAMP WITH TIME ZONE := date_trunc('month', p_month)::timestamp AT TIME ZONE 'UTC';
+    v_end TIMESTAMP WITH TIME ZONE := (date_trunc('month', p_month) + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC';
+    v_name TEXT := 'conversation_history_y' || to_char(p_month, 'YYYY') || 'm' || to_char(p_month, 'MM');
+    i INTEGER;
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN v_name;
+    END IF;
+
+    IF p_tenant_buckets > 0 THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF conversation_history FOR VALUES FROM (%L) TO (%L) PARTITION BY HASH (tenant_id)',
+                       v_name, v_start, v_end);
+        FOR i IN 0..p_tenant_buckets - 1 LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES WITH (MODULUS %s, REMAINDER %s)',
+                           v_name || '_h' || i, v_name, p_tenant_buckets, i);
+        END LOOP;
+    ELSE
+        EXECUTE format('CREATE TABLE %I PARTITION OF conversation_history FOR VALUES FROM (%L) TO (%L)',
+                       v_name, v_start, v_end);
+    END IF;
+
+    RETURN v_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =============================================================================
+-- 2. SWAP IN THE PARTITIONED TABLE
+-- =============================================================================
+
+-- Views are bound to the old table and are recreated below
+DROP VIEW IF EXISTS conversation_stats_by_tenant;
+DROP VIEW IF EXISTS recent_conversations;
+DROP VIEW IF EXISTS session_analytics;
+
+ALTER TABLE conversation_history RENAME TO conversation_history_unpartitioned;
+ALTER INDEX IF EXISTS conversation_history_pkey RENAME TO conversation_history_unpartitioned_pkey;
+
+-- The partition key must be part of the primary key
+CREATE TABLE conversation_history (
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
+    tenant_id VARCHAR(100) NOT NULL,
+    user_id VARCHAR(100) NOT NULL,
+    session_id VARCHAR(100) NOT NULL,
+    role VARCHAR(50) NOT NULL CHECK (role IN ('USER', 'ASSISTANT', 'SYSTEM')),
+    content TEXT NOT NULL,
+    metadata JSONB DEFAULT '{}' NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+
+    CONSTRAINT conversation_history_pkey PRIMARY KEY (id, created_at),
+    CONSTRAINT chk_content_not_empty CHECK (LENGTH(TRIM(content)) > 0),
+    CONSTRAINT chk_tenant_id_not_empty CHECK (LENGTH(TRIM(tenant_id)) > 0),
+    CONSTRAINT chk_user_id_not_empty CHECK (LENGTH(TRIM(user_id)) > 0),
+    CONSTRAINT chk_session_id_not_empty CHECK (LENGTH(TRIM(session_id)) > 0)
+) PARTITION BY RANGE (created_at);
+
+-- Catches rows outside the pre-created months; the retention job keeps future partitions ahead of time
+CREATE TABLE conversation_history_default PARTITION OF conversation_history DEFAULT;
+
+-- Monthly partitions from the oldest existing row up to two months ahead
+DO $$
+DECLARE
+    v_month DATE := date_trunc('month', COALESCE(
+        (SELECT MIN(created_at) FROM conversation_history_unpartitioned), NOW()) AT TIME ZONE 'UTC')::date;
+    v_last DATE := date_trunc('month', (NOW() AT TIME ZONE 'UTC') + INTERVAL '2 months')::date;
+BEGIN
+    WHILE v_month <= v_last LOOP
+        PERFORM create_conversation_history_partition(v_month);
+        v_month := (v_month + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO conversation_history (id, tenant_id, user_id, session_id, role, content, metadata, created_at, updated_at)
+SELECT id, tenant_id, user_id, session_id, role, content, metadata, created_at, updated_at
+FROM conversation_history_unpartitioned;
+
+DROP TABLE conversation_history_unpartitioned;
+
+-- =============================================================================
+-- 3. INDEXES (defined on the parent, created on every partition)
+-- =============================================================================
+
+CREATE INDEX IF NOT EXISTS idx_conversation_tenant_user
+    ON conversation_history(tenant_id, user_id);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_session
+    ON conversation_history(session_id);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_created
+    ON conversation_history(created_at DESC);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_role
+    ON conversation_history(role);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_tenant_session
+    ON conversation_history(tenant_id, session_id, created_at);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_metadata_gin
+    ON conversation_history USING gin(metadata);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_metadata_request_type
+    ON conversation_history USING btree((metadata ->> 'request_type'));
+
+CREATE INDEX IF NOT EXISTS idx_conversation_metadata_message_type
+    ON conversation_history USING btree((metadata ->> 'message_type'));
+
+CREATE INDEX IF NOT EXISTS idx_conversation_metadata_source
+    ON conversation_history USING btree((metadata ->> 'source'));
+
+-- =============================================================================
+-- 4. TRIGGER AND VIEWS
+-- =============================================================================
+
+CREATE TRIGGER update_conversation_history_updated_at
+    BEFORE UPDATE ON conversation_history
+    FOR EACH ROW
+    EXECUTE FUNCTION update_updated_at_column();
+
+CREATE OR REPLACE VIEW conversation_stats_by_tenant AS
+SELECT
+    tenant_id,
+    COUNT(*) as total_messages,
+    COUNT(DISTINCT user_id) as unique_users,
+    COUNT(DISTINCT session_id) as unique_sessions,
+    COUNT(CASE WHEN role = 'USER' THEN 1 END) as user_messages,
+    COUNT(CASE WHEN role = 'ASSISTANT' THEN 1 END) as assistant_messages,
+    COUNT(CASE WHEN metadata ->> 'request_type' = 'creation_request' THEN 1 END) as creation_requests,
+    COUNT(CASE WHEN metadata ->> 'request_type' = 'pricing_inquiry' THEN 1 END) as pricing_inquiries,
+    COUNT(CASE WHEN metadata ->> 'request_type' = 'template_inquiry' THEN 1 END) as template_inquiries,
+    MIN(created_at) as first_message_date,
+    MAX(created_at) as last_message_date,
+    AVG(LENGTH(content)) as avg_content_length
+FROM conversation_history
+GROUP BY tenant_id;
+
+CREATE OR REPLACE VIEW recent_conversations AS
+SELECT
+    id,
+    tenant_id,
+    user_id,
+    session_id,
+    role,
+    LEFT(content, 100) || CASE WHEN LENGTH(content) > 100 THEN '...' ELSE '' END as content_preview,
+    metadata,
+    created_at
+FROM conversation_history
+WHERE created_at >= NOW() - INTERVAL '7 days'
+ORDER BY created_at DESC;
+
+CREATE OR REPLACE VIEW session_analytics AS
+SELECT
+    tenant_id,
+    session_id,
+    user_id,
+    COUNT(*) as message_count,
+    COUNT(CASE WHEN role = 'USER' THEN 1 END) as user_message_count,
+    COUNT(CASE WHEN role = 'ASSISTANT' THEN 1 END) as assistant_message_count,
+    MIN(created_at) as session_start,
+    MAX(created_at) as session_end,
+    MAX(created_at) - MIN(created_at) as session_duration,
+    array_agg(DISTINCT metadata ->> 'request_type') FILTER (WHERE metadata ->> 'request_type' IS NOT NULL) as request_types
+FROM conversation_history
+GROUP BY tenant_id, session_id, user_id
+ORDER BY session_start DESC;
+
+-- =============================================================================
+-- 5. PER-TENANT RETENTION
+-- =============================================================================
+
+-- Tenants without a row use agent.memory.retention.default-retention
+CREATE TABLE IF NOT EXISTS conversation_retention_policy (
+    tenant_id VARCHAR(100) PRIMARY KEY,
+    retention_days INTEGER NOT NULL CHECK (retention_days > 0),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT NOW()
+);
+
+-- =============================================================================
+-- 6. COMMENTS
+-- =============================================================================
+
+COMMENT ON TABLE conversation_history IS 'AI agent conversation history, range-partitioned by month on created_at (conversation_history_yYYYYmMM)';
+COMMENT ON TABLE conversation_history_default IS 'Default partition for rows outside pre-created months; should stay empty';
+COMMENT ON TABLE conversation_retention_policy IS 'Per-tenant retention overrides, enforced by chunked purge when shorter than partition retention';
+COMMENT ON FUNCTION create_conversation_history_partition IS 'Create the monthly conversation_history partition for a date, optionally hash sub-partitioned by tenant';
+COMMENT ON INDEX idx_conversation_metadata_gin IS 'GIN index for efficient JSONB metadata queries using PostgreSQL operators';
+COMMENT ON INDEX idx_conversation_tenant_session IS 'Composite index for fast tenant+session queries with chronological ordering';
\ No newline at end of file
@@ -0,0 +1,164 @@
+-- AI Agent Database Migration - Compact conversation metadata
+-- Version: V4
+-- Description: Promote request_type/message_type from JSONB metadata to typed columns with B-tree indexes,
+--              and strip metadata keys that duplicate row columns (tenant_id, user_id, session_id, timestamps, lengths)
+
+-- =============================================================================
+-- 1. TYPED COLUMNS
+-- =============================================================================
+
+-- Added on the partitioned parent, so every partition gets the columns; values are the Java enum names
+ALTER TABLE conversation_history
+    ADD COLUMN IF NOT EXISTS request_type VARCHAR(30)
+        CHECK (request_type IN ('CREATION_REQUEST', 'PRICING_INQUIRY', 'TEMPLATE_INQUIRY', 'GENERAL_INQUIRY')),
+    ADD COLUMN IF NOT EXISTS message_type VARCHAR(30)
+        CHECK (message_type IN ('USER_INPUT', 'AI_RESPONSE', 'SYSTEM_MESSAGE'));
+
+-- =============================================================================
+-- 2. MIGRATE EXISTING ROWS
+-- =============================================================================
+
+-- Known values move to the typed columns; unknown values stay in metadata so nothing is lost.
+-- Keys removed from every row:
+--   tenant_id, user_id, session_id  -> same as the row columns
+--   timestamp, processing_timestamp -> written in the same call as created_at
+--   input_length, response_length   -> LENGTH(content)
+UPDATE conversation_history ch
+SET request_type = v.request_type,
+    message_type = v.message_type,
+    metadata = ch.metadata
+        - ARRAY['tenant_id', 'user_id', 'session_id', 'timestamp', 'processing_timestamp',
+                'input_length', 'response_length']
+        - CASE WHEN v.request_type IS NOT NULL THEN 'request_type' ELSE '' END
+        - CASE WHEN v.message_type IS NOT NULL THEN 'message_type' ELSE '' END
+FROM (
+    SELECT id, created_at,
+           CASE WHEN metadata ->> 'request_type' IN ('creation_request', 'pricing_inquiry', 'template_inquiry', 'general_inquiry')
+                THEN upper(metadata ->> 'request_type') END AS request_type,
+           CASE WHEN metadata ->> 'message_type' IN ('user_input', 'ai_response', 'system_message')
+                THEN upper(metadata ->> 'message_type') END AS message_type
+    FROM conversation_history
+    WHERE metadata ?| ARRAY['request_type', 'message_type', 'tenant_id', 'user_id', 'session_id', 'timestamp',
+                            'processing_timestamp', 'input_length', 'response_length']
+) v
+WHERE ch.id = v.id AND ch.created_at = v.created_at;
+
+-- =============================================================================
+-- 3. INDEXES
+-- =============================================================================
+
+-- The JSONB expression indexes are replaced by plain B-tree indexes on the typed columns
+DROP INDEX IF EXISTS idx_conversation_metadata_request_type;
+DROP INDEX IF EXISTS idx_conversation_metadata_message_type;
+
+CREATE INDEX IF NOT EXISTS idx_conversation_tenant_request_type
+    ON conversation_history(tenant_id, request_type, created_at DESC);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_message_type
+    ON conversation_history(message_type);
+
+-- The UPDATE above rewrote most rows: run VACUUM ANALYZE conversation_history (and REINDEX CONCURRENTLY
+-- idx_conversation_metadata_gin per partition) afterwards; neither can run inside the migration transaction
+
+-- =============================================================================
+-- 4. VIEWS AND FUNCTIONS
+-- =============================================================================
+
+CREATE OR REPLACE VIEW conversation_stats_by_tenant AS
+SELECT
+    tenant_id,
+    COUNT(*) as total_messages,
+    COUNT(DISTINCT user_id) as unique_users,
+    COUNT(DISTINCT session_id) as unique_sessions,
+    COUNT(CASE WHEN role = 'USER' THEN 1 END) as user_messages,
+    COUNT(CASE WHEN role = 'ASSISTANT' THEN 1 END) as assistant_messages,
+    COUNT(CASE WHEN request_type = 'CREATION_REQUEST' THEN 1 END) as creation_requests,
+    COUNT(CASE WHEN request_type = 'PRICING_INQUIRY' THEN 1 END) as pricing_inquiries,
+    COUNT(CASE WHEN request_type = 'TEMPLATE_INQUIRY' THEN 1 END) as template_inquiries,
+    MIN(created_at) as first_message_date,
+    MAX(created_at) as last_message_date,
+    AVG(LENGTH(content)) as avg_content_length
+FROM conversation_history
+GROUP BY tenant_id;
+
+CREATE OR REPLACE VIEW session_analytics AS
+SELECT
+    tenant_id,
+    session_id,
+    user_id,
+    COUNT(*) as message_count,
+    COUNT(CASE WHEN role = 'USER' THEN 1 END) as user_message_count,
+    COUNT(CASE WHEN role = 'ASSISTANT' THEN 1 END) as assistant_message_count,
+    MIN(created_at) as session_start,
+    MAX(created_at) as session_end,
+    MAX(created_at) - MIN(created_at) as session_duration,
+    array_agg(DISTINCT lower(request_type)) FILTER (WHERE request_type IS NOT NULL) as request_types
+FROM conversation_history
+GROUP BY tenant_id, session_id, user_id
+ORDER BY session_start DESC;
+
+CREATE OR REPLACE FUNCTION generate_test_conversations(
+    p_tenant_id VARCHAR(100),
+    p_user_count INTEGER DEFAULT 5,
+    p_session_count INTEGER DEFAULT 10
+)
+RETURNS VOID AS $$
+DECLARE
+    i INTEGER;
+    j INTEGER;
+    user_id_val VARCHAR(100);
+    session_id_val VARCHAR(100);
+BEGIN
+    FOR i IN 1..p_user_count LOOP
+        user_id_val := p_tenant_id || '-user-' || LPAD(i::text, 3, '0');
+
+        FOR j IN 1..p_session_count LOOP
+            session_id_val := p_tenant_id || '-session-' || LPAD((i * p_session_count + j)::text, 4, '0');
+
+            -- Insert user message
+            INSERT INTO conversation_history (tenant_id, user_id, session_id, role, content, message_type, request_type, metadata)
+            VALUES (
+                p_tenant_id,
+                user_id_val,
+                session_id_val,
+                'USER',
+                'Test message ' || j || ' from user ' || i,
+                'USER_INPUT',
+                'GENERAL_INQUIRY',
+                jsonb_build_object(
+                    'source', 'test_generation',
+                    'test_user', i,
+                    'test_session', j
+                )
+            );
+
+            -- Insert assistant response
+            INSERT INTO conversation_history (tenant_id, user_id, session_id, role, content, message_type, metadata)
+            VALUES (
+                p_tenant_id,
+                user_id_val,
+                session_id_val,
+                'ASSISTANT',
+                'Test response ' || j || ' for user ' || i,
+                'AI_RESPONSE',
+                jsonb_build_object(
+                    'source', 'test_generation',
+                    'test_user', i,
+                    'test_session', j
+                )
+            );
+        END LOOP;
+    END LOOP;
+
+    RAISE NOTICE 'Generated % test conversations for tenant %', (p_user_count * p_session_count * 2), p_tenant_id;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =============================================================================
+-- 5. COMMENTS
+-- =============================================================================
+
+COMMENT ON COLUMN conversation_history.request_type IS 'Classified request type of USER messages (CREATION_REQUEST, PRICING_INQUIRY, TEMPLATE_INQUIRY, GENERAL_INQUIRY)';
+COMMENT ON COLUMN conversation_history.message_type IS 'Message type (USER_INPUT, AI_RESPONSE, SYSTEM_MESSAGE)';
+COMMENT ON COLUMN conversation_history.metadata IS 'Free-form extras only; typed and duplicated keys live in their own columns';
+COMMENT ON INDEX idx_conversation_tenant_request_type IS 'B-tree index for request type lookups per tenant, newest first';
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.service.ai_agent.agent.memory;
+
+import com.service.ai_agent.agent.prompt.TokenCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Gom lô theo linger/token, ghi đồng bộ khi hàng đợi đầy và cô lập document lỗi,
+ * với VectorStore giả lập ghi lại từng lần add.
+ */
+class BatchingVectorStoreWriterTest {
+
+    private static final TokenCounter TOKEN_COUNTER = new TokenCounter("gpt-4o");
+
+    private final StubVectorStore vectorStore = new StubVectorStore();
+    private BatchingVectorStoreWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        vectorStore.release.countDown();
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void isolatesTheFailingDocumentAndWritesTheRest() {
+        writer = writer(false, 100, 100, 100_000, 200);
+        vectorStore.rejects = document -> document.getId().equals("doc-5");
+
+        writer.submit(documents(8));
+
+        BatchingVectorStoreWriter.Stats stats = writer.getStats();
+        assertThat(stats.written()).isEqualTo(7);
+        assertThat(stats.failed()).isEqualTo(1);
+        assertThat(stats.recentFailures()).singleElement()
+                .satisfies(failure -> assertThat(failure.documentId()).isEqualTo("doc-5"));
+        assertThat(vectorStore.storedIds()).hasSize(7).doesNotContain("doc-5");
+    }
+
+    @Test
+    void doesNotSplitFurtherWhenBothHalvesFail() {
+        writer = writer(false, 100, 100, 100_000, 200);
+        vectorStore.rejects = document -> true;
+
+        writer.submit(documents(8));
+
+        // Cả lô, rồi hai nửa; lỗi chung (rate limit, DB) không nhân thêm request
+        assertThat(writer.getStats().addCalls()).isEqualTo(3);
+        assertThat(writer.getStats().failed()).isEqualTo(8);
+    }
+
+    @Test
+    void lingerGathersSeparateSubmissionsIntoOneBatch() {
+        writer = writer(true, 100, 100, 100_000, 300);
+        writer.start();
+
+        for (Document document : documents(5)) {
+            writer.submit(List.of(document));
+        }
+
+        awaitUntil(() -> writer.getStats().written() == 5);
+        assertThat(vectorStore.batchSizes).containsExactly(5);
+    }
+
+    @Test
+    void cutsBatchAtTokenLimit() {
+        List<Document> documents = documents(5);
+        int tokens = TOKEN_COUNTER.count(documents.get(0).getText());
+        // Hai document còn trong ngân sách token, document thứ ba vượt ngân sách nên mở lô mới
+        writer = writer(true, 100, 100, tokens * 2 + 1, 300);
+        writer.start();
+
+        writer.submit(documents);
+
+        awaitUntil(() -> writer.getStats().written() == 5);
+        assertThat(vectorStore.batchSizes).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    void writesSynchronouslyWhenQueueIsFull() {
+        writer = writer(true, 1, 100, 100_000, 10);
+        writer.start();
+        vectorStore.blockWriterThread = true;
+
+        writer.submit(documents(1));
+        awaitUntil(() -> vectorStore.writerBlocked.getCount() == 0);
+        // Writer đang bận: một document vào hàng đợi (sức chứa 1), hai document còn lại ghi trên thread gọi
+        writer.submit(List.of(document(1), document(2), document(3)));
+
+        assertThat(vectorStore.callerThreadIds).containsExactly(List.of("doc-2", "doc-3"));
+        vectorStore.release.countDown();
+        awaitUntil(() -> writer.getStats().written() == 4);
+    }
+
+    private BatchingVectorStoreWriter writer(boolean enabled, int queueCapacity, int maxBatchDocuments,
+                                             int maxBatchTokens, long maxLingerMs) {
+        return new BatchingVectorStoreWriter(Optional.of(vectorStore), TOKEN_COUNTER, enabled, queueCapacity,
+                maxBatchDocuments, maxBatchTokens, maxLingerMs);
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(document(i));
+        }
+        return documents;
+    }
+
+    private static Document document(int index) {
+        return Document.builder()
+                .id("doc-" + index)
+                .text("Gói Premium có tên miền riêng và SSL miễn phí")
+                .metadata(Map.of("tenantId", "tenant-a", "sessionId", "session-0001"))
+                .build();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within 5s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private static class StubVectorStore implements VectorStore {
+
+        private final Thread testThread = Thread.currentThread();
+        private final List<String> stored = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<List<String>> callerThreadIds = new CopyOnWriteArrayList<>();
+        private final CountDownLatch writerBlocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile Predicate<Document> rejects = document -> false;
+        private volatile boolean blockWriterThread;
+
+        @Override
+        public void add(List<Document> documents) {
+            List<String> ids = documents.stream().map(Document::getId).toList();
+            if (Thread.currentThread() == testThread) {
+                callerThreadIds.add(ids);
+            } else if (blockWriterThread) {
+                writerBlocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (documents.stream().anyMatch(rejects)) {
+                throw new IllegalArgumentException("Invalid input for embedding");
+            }
+            batchSizes.add(documents.size());
+            stored.addAll(ids);
+        }
+
+        List<String> storedIds() {
+            return stored;
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.service.ai_agent.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.ai_agent.agent.prompt.TokenCounter;
+import com.service.ai_agent.domain.ConversationHistory;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Flush theo lô, giới hạn tham số bind của một câu INSERT, thử lại khi ghi lỗi và drain khi shutdown,
+ * với JdbcTemplate giả lập ghi lại số dòng của từng câu lệnh.
+ */
+class ConversationWriteBehindBufferTest {
+
+    private static final TokenCounter TOKEN_COUNTER = new TokenCounter("gpt-4o");
+
+    private final RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+    private final RecordingVectorStore vectorStore = new RecordingVectorStore();
+
+    @Test
+    void flushesQueuedInteractionsAndRunsCallbacksAfterWrite() throws Exception {
+        ConversationWriteBehindBuffer buffer = buffer(100, 50);
+        buffer.start();
+        CountDownLatch persisted = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            buffer.enqueue(interaction(persisted::countDown));
+        }
+
+        assertThat(persisted.await(5, TimeUnit.SECONDS)).isTrue();
+        buffer.stop();
+
+        assertThat(jdbcTemplate.totalRows()).isEqualTo(10);
+        assertThat(jdbcTemplate.statementRows.size()).isLessThan(5);
+    }
+
+    @Test
+    void splitsLargeFlushBelowBindParameterLimit() {
+        int interactions = 4000;
+        ConversationWriteBehindBuffer buffer = buffer(interactions, 500);
+        buffer.start();
+        for (int i = 0; i < interactions; i++) {
+            buffer.enqueue(interaction(() -> { }));
+        }
+        buffer.stop();
+
+        assertThat(jdbcTemplate.totalRows()).isEqualTo(interactions * 2);
+        assertThat(jdbcTemplate.statementRows).hasSizeGreaterThanOrEqualTo(2)
+                .allSatisfy(rows -> assertThat(rows).isLessThanOrEqualTo(ConversationWriteBehindBuffer.MAX_ROWS_PER_INSERT));
+    }
+
+    @Test
+    void retriesFailedWriteAndKeepsFlushing() {
+        ConversationWriteBehindBuffer buffer = buffer(100, 50);
+        buffer.start();
+        AtomicInteger callbacks = new AtomicInteger();
+        jdbcTemplate.failNext.set(2);
+        buffer.enqueue(interaction(callbacks::incrementAndGet));
+        awaitAttempts(3);
+        buffer.enqueue(interaction(callbacks::incrementAndGet));
+        buffer.stop();
+
+        // Hai lần lỗi tạm thời rồi thành công, sau đó interaction thứ hai
+        assertThat(jdbcTemplate.attempts.get()).isEqualTo(4);
+        assertThat(jdbcTemplate.totalRows()).isEqualTo(4);
+        assertThat(callbacks.get()).isEqualTo(2);
+        assertThat(vectorStore.added).hasSize(2);
+    }
+
+    @Test
+    void writesInteractionsOneByOneWhenChunkKeepsFailing() {
+        ConversationWriteBehindBuffer buffer = buffer(2, 500);
+        buffer.start();
+        AtomicInteger callbacks = new AtomicInteger();
+        jdbcTemplate.failNext.set(3);
+        buffer.enqueue(interaction(callbacks::incrementAndGet));
+        buffer.enqueue(interaction(callbacks::incrementAndGet));
+        buffer.stop();
+
+        assertThat(jdbcTemplate.statementRows).containsExactly(2, 2);
+        assertThat(callbacks.get()).isEqualTo(2);
+        assertThat(vectorStore.added).hasSize(2);
+    }
+
+    @Test
+    void permanentFailureSkipsCallbacksAndVectorDocuments() {
+        ConversationWriteBehindBuffer buffer = buffer(100, 50);
+        AtomicInteger callbacks = new AtomicInteger();
+        jdbcTemplate.failNext.set(Integer.MAX_VALUE);
+        buffer.enqueue(interaction(callbacks::incrementAndGet));
+
+        assertThat(jdbcTemplate.attempts.get()).isEqualTo(3);
+        assertThat(callbacks.get()).isZero();
+        // pgvector không được giữ turn mà conversation_history không có
+        assertThat(vectorStore.added).isEmpty();
+    }
+
+    @Test
+    void stopDrainsPendingInteractions() {
+        ConversationWriteBehindBuffer buffer = buffer(10, 200);
+        buffer.start();
+        AtomicInteger callbacks = new AtomicInteger();
+        for (int i = 0; i < 25; i++) {
+            buffer.enqueue(interaction(callbacks::incrementAndGet));
+        }
+        buffer.stop();
+
+        assertThat(jdbcTemplate.totalRows()).isEqualTo(50);
+        assertThat(callbacks.get()).isEqualTo(25);
+        assertThat(buffer.getQueueSize()).isZero();
+    }
+
+    @Test
+    void writesSynchronouslyWhenNotRunning() {
+        ConversationWriteBehindBuffer buffer = buffer(100, 50);
+        AtomicInteger callbacks = new AtomicInteger();
+        buffer.enqueue(interaction(callbacks::incrementAndGet));
+
+        assertThat(jdbcTemplate.totalRows()).isEqualTo(2);
+        assertThat(callbacks.get()).isEqualTo(1);
+    }
+
+    private ConversationWriteBehindBuffer buffer(int flushSize, long flushIntervalMs) {
+        // Batching tắt: document được ghi vào vector store ngay trên thread flush
+        BatchingVectorStoreWriter vectorStoreWriter = new BatchingVectorStoreWriter(Optional.of(vectorStore),
+                TOKEN_COUNTER, false, 100, 100, 100_000, 200);
+        return new ConversationWriteBehindBuffer(Optional.of(jdbcTemplate), Optional.empty(), vectorStoreWriter,
+                new ObjectMapper(), true, 10_000, flushSize, flushIntervalMs, 3, 10);
+    }
+
+    private static ConversationWriteBehindBuffer.PendingInteraction interaction(Runnable onPersisted) {
+        Instant now = Instant.now();
+        return new ConversationWriteBehindBuffer.PendingInteraction(List.of(
+                entry(ConversationHistory.ConversationRole.USER, "Giá gói Premium là bao nhiêu?", now),
+                entry(ConversationHistory.ConversationRole.ASSISTANT, "299.000 VND/tháng", now.plusNanos(1_000))),
+                List.of(new Document("Giá gói Premium là bao nhiêu?\n299.000 VND/tháng",
+                        Map.of("tenantId", "tenant-a", "sessionId", "session-0001"))), onPersisted);
+    }
+
+    private static ConversationHistory entry(ConversationHistory.ConversationRole role, String content, Instant createdAt) {
+        return ConversationHistory.builder()
+                .tenantId("tenant-a")
+                .userId("user-001")
+                .sessionId("session-0001")
+                .role(role)
+                .content(content)
+                .metadata(Map.of())
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private void awaitAttempts(int attempts) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (jdbcTemplate.attempts.get() < attempts && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(jdbcTemplate.attempts.get()).isGreaterThanOrEqualTo(attempts);
+    }
+
+    private static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        private final List<Integer> statementRows = new CopyOnWriteArrayList<>();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger failNext = new AtomicInteger();
+
+        @Override
+        public int update(String sql, Object... args) {
+            attempts.incrementAndGet();
+            if (failNext.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                throw new IllegalStateException("connection refused");
+            }
+            int rows = args.length / 11;
+            statementRows.add(rows);
+            return rows;
+        }
+
+        int totalRows() {
+            return statementRows.stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    private static class RecordingVectorStore implements VectorStore {
+
+        private final List<Document> added = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void add(List<Document> documents) {
+            added.addAll(documents);
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.service.ai_agent.agent.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Append dòng mới vào entry load trước khi ghi, và bỏ entry load lại trong lúc ghi
+ * (đã đọc được các dòng từ storage) thay vì append lần nữa.
+ */
+class SessionContextCacheTest {
+
+    private static final ContextWindowProperties.Window WINDOW = new ContextWindowProperties.Window(20, 8000);
+    private static final List<String> TURN = List.of("USER: Giá gói Premium?", "ASSISTANT: 499.000đ/tháng");
+
+    private final SessionContextCache cache = new SessionContextCache(true, 100, Duration.ofMinutes(30));
+    // Giả lập bảng conversation history của session
+    private final List<String> storage = new ArrayList<>(List.of("USER: Xin chào", "ASSISTANT: Chào bạn"));
+    private int loads;
+
+    @Test
+    void appendsToEntryLoadedBeforeWrite() {
+        get();
+        long writeStartedNanos = System.nanoTime();
+        storage.addAll(TURN);
+
+        cache.append("tenant-a", "session-1", writeStartedNanos, TURN);
+
+        assertThat(get()).isEqualTo(String.join("\n", storage));
+        assertThat(loads).isEqualTo(1);
+    }
+
+    @Test
+    void dropsEntryReloadedWhileWriting() {
+        get();
+        long writeStartedNanos = System.nanoTime();
+        storage.addAll(TURN);
+        // Entry bị evict và load lại trước khi callback onPersisted chạy: đã chứa turn mới
+        cache.invalidate("tenant-a", "session-1");
+        get();
+
+        cache.append("tenant-a", "session-1", writeStartedNanos, TURN);
+
+        assertThat(get()).isEqualTo(String.join("\n", storage));
+        assertThat(loads).isEqualTo(3);
+    }
+
+    private String get() {
+        return cache.get("tenant-a", "session-1", WINDOW, () -> {
+            loads++;
+            return List.copyOf(storage);
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.service.ai_agent.agent.prompt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Giới hạn theo từng phần, thứ tự cắt theo priority, phần bắt buộc không bị cắt
+ * và việc cắt dòng đầu (giữ đầu hoặc đuôi) khi riêng nó đã vượt ngân sách, với TokenCounter thật.
+ */
+class ContextAssemblerTest {
+
+    private static final TokenCounter TOKEN_COUNTER = new TokenCounter("gpt-4o");
+
+    private static final CompiledPrompt TEMPLATE = new CompiledPrompt("test",
+            "Lịch sử:\n{memory}\nDanh mục:\n{catalog}\nCâu hỏi: {input}");
+
+    private static final String MEMORY = lines("Khách hỏi về gói Premium lần", 20);
+    private static final String CATALOG = lines("Mẫu Restaurant Pro, giao diện nhà hàng, đặt bàn trực tuyến, số", 20);
+    private static final String INPUT = "Giá gói Premium là bao nhiêu?";
+
+    private final ContextBudgetProperties budget = new ContextBudgetProperties();
+    private final ContextAssembler assembler = new ContextAssembler(TOKEN_COUNTER, budget);
+
+    @Test
+    void capsEachSectionAndKeepsTheConfiguredEnd() {
+        budget.getSectionMaxTokens().put("memory", 40);
+        budget.getSectionMaxTokens().put("catalog", 40);
+
+        ContextAssembler.Assembly assembly = assemble();
+
+        assertThat(assembly.sectionTokens().get("memory")).isPositive().isLessThanOrEqualTo(40);
+        assertThat(assembly.sectionTokens().get("catalog")).isPositive().isLessThanOrEqualTo(40);
+        // Memory giữ các dòng mới nhất, catalog giữ các mục đầu danh sách
+        assertThat(assembly.text("memory")).endsWith("lần 20").doesNotContain("lần 1\n");
+        assertThat(assembly.text("catalog")).startsWith(CATALOG.lines().findFirst().orElseThrow())
+                .doesNotContain("số 20");
+        assertThat(assembly.text("input")).isEqualTo(INPUT);
+    }
+
+    @Test
+    void trimsLowestPrioritySectionFirst() {
+        int memoryTokens = TOKEN_COUNTER.count(MEMORY);
+        budget.setMaxPromptTokens(untrimmedTotal() - memoryTokens / 2);
+
+        ContextAssembler.Assembly assembly = assemble();
+
+        assertThat(assembly.text("catalog")).isEqualTo(CATALOG);
+        assertThat(assembly.sectionTokens().get("memory")).isPositive().isLessThan(memoryTokens);
+        assertThat(assembly.totalTokens()).isLessThanOrEqualTo(budget.getMaxPromptTokens());
+        assertThat(assembly.droppedTokens()).isPositive();
+    }
+
+    @Test
+    void dropsLowerPrioritySectionEntirelyBeforeTrimmingTheNext() {
+        int catalogTokens = TOKEN_COUNTER.count(CATALOG);
+        budget.setMaxPromptTokens(untrimmedTotal() - TOKEN_COUNTER.count(MEMORY) - catalogTokens / 2);
+
+        ContextAssembler.Assembly assembly = assemble();
+
+        assertThat(assembly.text("memory")).isEmpty();
+        assertThat(assembly.sectionTokens().get("catalog")).isPositive().isLessThan(catalogTokens);
+        assertThat(assembly.text("input")).isEqualTo(INPUT);
+        assertThat(assembly.totalTokens()).isLessThanOrEqualTo(budget.getMaxPromptTokens());
+    }
+
+    @Test
+    void neverTrimsRequiredSection() {
+        String longInput = lines(INPUT, 50);
+        budget.setMaxPromptTokens(50);
+        budget.getSectionMaxTokens().put("input", 10);
+
+        ContextAssembler.Assembly assembly = assembler.assemble("test", TEMPLATE, 2, List.of(
+                ContextAssembler.Section.keepTail("memory", MEMORY, 1),
+                ContextAssembler.Section.keepHead("catalog", CATALOG, 2),
+                ContextAssembler.Section.required("input", longInput)));
+
+        assertThat(assembly.text("input")).isEqualTo(longInput);
+        assertThat(assembly.text("memory")).isEmpty();
+        assertThat(assembly.text("catalog")).isEmpty();
+        // Phần bắt buộc vẫn được gửi dù vượt ngân sách
+        assertThat(assembly.totalTokens()).isGreaterThan(budget.getMaxPromptTokens());
+    }
+
+    @Test
+    void truncatesFirstLineWhenItAloneExceedsTheBudget() {
+        String singleLine = CATALOG.replace('\n', ' ');
+        budget.getSectionMaxTokens().put("catalog", 15);
+
+        ContextAssembler.Assembly assembly = assembler.assemble("test", TEMPLATE, 2, List.of(
+                ContextAssembler.Section.keepHead("catalog", singleLine, 2),
+                ContextAssembler.Section.required("input", INPUT)));
+
+        assertThat(assembly.text("catalog")).isNotEmpty();
+        assertThat(singleLine).startsWith(assembly.text("catalog"));
+        assertThat(assembly.sectionTokens().get("catalog")).isLessThanOrEqualTo(15);
+    }
+
+    @Test
+    void keepsEndOfFirstLineForTailSections() {
+        String singleLine = MEMORY.replace('\n', ' ');
+        budget.getSectionMaxTokens().put("memory", 15);
+
+        ContextAssembler.Assembly assembly = assembler.assemble("test", TEMPLATE, 2, List.of(
+                ContextAssembler.Section.keepTail("memory", singleLine, 1),
+                ContextAssembler.Section.required("input", INPUT)));
+
+        assertThat(assembly.text("memory")).isNotEmpty().endsWith("lần 20");
+        assertThat(singleLine).endsWith(assembly.text("memory"));
+        assertThat(assembly.sectionTokens().get("memory")).isLessThanOrEqualTo(15);
+    }
+
+    private ContextAssembler.Assembly assemble() {
+        return assembler.assemble("test", TEMPLATE, 2, List.of(
+                ContextAssembler.Section.keepTail("memory", MEMORY, 1),
+                ContextAssembler.Section.keepHead("catalog", CATALOG, 2),
+                ContextAssembler.Section.required("input", INPUT)));
+    }
+
+    private static int untrimmedTotal() {
+        return TOKEN_COUNTER.count(TEMPLATE.getStaticText()) + 2 * TokenCounter.TOKENS_PER_MESSAGE
+                + TokenCounter.TOKENS_PER_REPLY + TOKEN_COUNTER.count(MEMORY) + TOKEN_COUNTER.count(CATALOG)
+                + TOKEN_COUNTER.count(INPUT);
+    }
+
+    private static String lines(String prefix, int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> prefix + " " + i)
+                .collect(Collectors.joining("\n"));
+    }
+}
\ No newline at end of file
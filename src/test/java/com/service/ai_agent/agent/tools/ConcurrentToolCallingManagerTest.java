@@ -0,0 +1,215 @@
+package com.service.ai_agent.agent.tools;
+
+import com.service.ai_agent.agent.metrics.AgentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.StaticToolCallbackResolver;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fork/join theo thứ tự LLM yêu cầu, timeout theo tool, thông báo "outcome unknown" cho tool không idempotent
+ * và việc chuyển lỗi của tool thành tool response, với ToolCallback giả lập.
+ */
+class ConcurrentToolCallingManagerTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Giữ các tool chậm cho đến khi test kết thúc
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ToolProperties toolProperties = new ToolProperties();
+    private final ToolMetrics toolMetrics = new ToolMetrics(new SimpleMeterRegistry());
+    private final ConcurrentToolCallingManager manager;
+
+    ConcurrentToolCallingManagerTest() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean("getPricingPlansTool", Tool.class, () -> new StubTool("getPricingPlansTool", Duration.ofMinutes(5)));
+        context.registerBean("createWebsiteTool", Tool.class, () -> new StubTool("createWebsiteTool", Duration.ZERO));
+        context.refresh();
+        ToolRegistry toolRegistry = new ToolRegistry(context,
+                new AgentMetrics(new SimpleMeterRegistry(), List.of(), 50));
+        toolProperties.setDefaultTimeout(Duration.ofSeconds(5));
+        manager = new ConcurrentToolCallingManager(new StaticToolCallbackResolver(List.of()),
+                DefaultToolExecutionExceptionProcessor.builder().build(), new TaskExecutorAdapter(executor),
+                toolProperties, toolMetrics, toolRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void runsToolsConcurrentlyAndKeepsRequestOrder() {
+        // Mỗi tool chỉ qua được barrier khi cả hai cùng đang chạy; tool thứ hai trả kết quả trước
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        ToolExecutionResult result = execute(
+                callback("getPricingPlansTool", input -> {
+                    await(barrier);
+                    awaitLatch(secondDone);
+                    return "plans";
+                }),
+                callback("getAvailableTemplatesTool", input -> {
+                    await(barrier);
+                    secondDone.countDown();
+                    return "templates";
+                }));
+
+        assertThat(responses(result)).extracting(ToolResponseMessage.ToolResponse::id)
+                .containsExactly("call-0", "call-1");
+        assertThat(responses(result)).extracting(ToolResponseMessage.ToolResponse::responseData)
+                .containsExactly("plans", "templates");
+        assertThat(toolMetrics.getBatchStats().parallelBatches()).isEqualTo(1);
+    }
+
+    @Test
+    void failingToolBecomesErrorResponseWhileOthersSucceed() {
+        ToolExecutionResult result = execute(
+                callback("getPricingPlansTool", input -> {
+                    throw new IllegalStateException("Laravel API unavailable");
+                }),
+                callback("getAvailableTemplatesTool", input -> "templates"));
+
+        assertThat(responses(result)).extracting(ToolResponseMessage.ToolResponse::responseData)
+                .containsExactly("Laravel API unavailable", "templates");
+    }
+
+    @Test
+    void idempotentToolTimeoutIsReportedAsError() {
+        toolProperties.setTimeouts(Map.of("getPricingPlansTool", Duration.ofMillis(100)));
+
+        ToolExecutionResult result = execute(callback("getPricingPlansTool", input -> {
+            awaitLatch(release);
+            return "plans";
+        }));
+
+        assertThat(responses(result).get(0).responseData())
+                .contains("timed out after 100 ms")
+                .doesNotContain("outcome is unknown");
+    }
+
+    @Test
+    void nonIdempotentToolTimeoutTellsModelNotToRetry() {
+        toolProperties.setTimeouts(Map.of("createWebsiteTool", Duration.ofMillis(100)));
+
+        ToolExecutionResult result = execute(callback("createWebsiteTool", input -> {
+            awaitLatch(release);
+            return "created";
+        }));
+
+        assertThat(responses(result).get(0).responseData())
+                .contains("outcome is unknown")
+                .contains("Do NOT call it again");
+    }
+
+    private ToolExecutionResult execute(ToolCallback... callbacks) {
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (int i = 0; i < callbacks.length; i++) {
+            toolCalls.add(new AssistantMessage.ToolCall("call-" + i, "function",
+                    callbacks[i].getToolDefinition().name(), "{}"));
+        }
+        Prompt prompt = new Prompt(List.of(new UserMessage("Giá gói Premium và các mẫu website?")),
+                ToolCallingChatOptions.builder().toolCallbacks(callbacks).build());
+        ChatResponse response = new ChatResponse(List.of(new Generation(
+                new AssistantMessage("", Map.of(), toolCalls))));
+        return manager.executeToolCalls(prompt, response);
+    }
+
+    private static List<ToolResponseMessage.ToolResponse> responses(ToolExecutionResult result) {
+        List<?> history = result.conversationHistory();
+        return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses();
+    }
+
+    private static ToolCallback callback(String name, Function<String, String> body) {
+        ToolDefinition definition = ToolDefinition.builder()
+                .name(name)
+                .description(name)
+                .inputSchema("{}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return body.apply(toolInput);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                return call(toolInput);
+            }
+        };
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Chỉ để ToolRegistry biết tool nào idempotent (có thời gian cache kết quả).
+     */
+    private record StubTool(String name, Duration resultCacheTtl) implements Tool<String, String> {
+
+        @Override
+        public String apply(String request) {
+            return name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDescription() {
+            return name;
+        }
+
+        @Override
+        public Duration getResultCacheTtl() {
+            return resultCacheTtl;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.service.ai_agent.agent.workflow.chain;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Fork/join, thứ tự merge và failure policy của ParallelStep.
+ */
+class ParallelStepTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void branchesRunConcurrently() {
+        // Mỗi nhánh chỉ qua được barrier khi cả ba nhánh cùng đang chạy
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        ParallelStep<List<String>> step = WorkflowStep.<List<String>>parallel(executor)
+                .defaultTimeout(Duration.ofSeconds(5))
+                .branch("a", ctx -> await(barrier, "a"), List::add)
+                .branch("b", ctx -> await(barrier, "b"), List::add)
+                .branch("c", ctx -> await(barrier, "c"), List::add)
+                .build();
+
+        assertThat(step.execute(new ArrayList<>())).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void mergesInDeclarationOrderOnCallingThread() {
+        // Nhánh khai báo sau hoàn tất trước
+        CountDownLatch secondDone = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+        List<Thread> mergeThreads = new ArrayList<>();
+        ParallelStep<List<String>> step = WorkflowStep.<List<String>>parallel(executor)
+                .defaultTimeout(Duration.ofSeconds(5))
+                .branch("first", ctx -> {
+                    awaitLatch(secondDone);
+                    return "first";
+                }, (ctx, result) -> {
+                    mergeThreads.add(Thread.currentThread());
+                    ctx.add(result);
+                })
+                .branch("second", ctx -> {
+                    secondDone.countDown();
+                    return "second";
+                }, (ctx, result) -> {
+                    mergeThreads.add(Thread.currentThread());
+                    ctx.add(result);
+                })
+                .build();
+
+        assertThat(step.execute(new ArrayList<>())).containsExactly("first", "second");
+        assertThat(mergeThreads).containsOnly(caller);
+    }
+
+    @Test
+    void failingRequiredBranchStopsWaitingForSiblings() {
+        CountDownLatch never = new CountDownLatch(1);
+        ParallelStep<List<String>> step = WorkflowStep.<List<String>>parallel(executor)
+                .defaultTimeout(Duration.ofSeconds(30))
+                .<String>branch("required", ctx -> {
+                    throw new IllegalStateException("Laravel unavailable");
+                }, List::add)
+                .branch("slow", ctx -> {
+                    awaitLatch(never);
+                    return "slow";
+                }, List::add)
+                .build();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> step.execute(new ArrayList<>()))
+                .isInstanceOf(WorkflowStepException.class)
+                .hasMessageContaining("required")
+                .hasRootCauseMessage("Laravel unavailable")
+                .satisfies(e -> assertThat(((WorkflowStepException) e).getStepName()).isEqualTo("required"));
+        // Không chờ nhánh chậm (timeout 30s) trước khi ném lỗi
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+        never.countDown();
+    }
+
+    @Test
+    void optionalBranchFallsBackOnErrorAndTimeout() {
+        CountDownLatch never = new CountDownLatch(1);
+        ParallelStep<List<String>> step = WorkflowStep.<List<String>>parallel(executor)
+                .defaultTimeout(Duration.ofSeconds(5))
+                .branch("required", ctx -> "required", List::add)
+                .<String>optionalBranch("failing", ctx -> {
+                    throw new IllegalStateException("boom");
+                }, List::add, () -> "failing-fallback")
+                .branch("timingOut", ctx -> {
+                    awaitLatch(never);
+                    return "late";
+                }, List::add, Duration.ofMillis(50), ParallelStep.FailurePolicy.CONTINUE, () -> "timeout-fallback")
+                .<String>optionalBranch("noFallback", ctx -> {
+                    throw new IllegalStateException("boom");
+                }, List::add, null)
+                .build();
+
+        assertThat(step.execute(new ArrayList<>()))
+                .containsExactly("required", "failing-fallback", "timeout-fallback");
+        never.countDown();
+    }
+
+    private static String await(CyclicBarrier barrier, String result) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+            return result;
+        } catch (Exception e) {
+            throw new IllegalStateException("Branches did not run concurrently", e);
+        }
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
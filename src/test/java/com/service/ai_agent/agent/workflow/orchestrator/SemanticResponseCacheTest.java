@@ -0,0 +1,106 @@
+package com.service.ai_agent.agent.workflow.orchestrator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tra cứu exact/semantic, các input không được cache và việc invalidate theo generation,
+ * với EmbeddingModel giả lập trả vector cố định theo input đã chuẩn hóa.
+ */
+class SemanticResponseCacheTest {
+
+    private static final String TENANT = "tenant-a";
+
+    private final StubEmbeddingModel embeddingModel = new StubEmbeddingModel(Map.of(
+            "giá gói premium là bao nhiêu", new float[] {1f, 0f, 0f},
+            "gói premium giá bao nhiêu", new float[] {0.99f, 0.1f, 0f},
+            "có những mẫu website nào", new float[] {0f, 1f, 0f}));
+
+    private final SemanticResponseCache cache = new SemanticResponseCache(embeddingModel, true, 0.92,
+            Duration.ofHours(1), 100, 100);
+
+    @Test
+    void exactHitAfterNormalizationSkipsEmbedding() {
+        SemanticResponseCache.Lookup miss = cache.lookup(TENANT, "Giá gói Premium là bao nhiêu?");
+        assertThat(miss.isHit()).isFalse();
+        cache.store(miss, "299.000 VND/tháng", 1200);
+        int embedCalls = embeddingModel.calls.get();
+
+        SemanticResponseCache.Lookup hit = cache.lookup(TENANT, "giá gói premium là bao nhiêu");
+
+        assertThat(hit.answer()).isEqualTo("299.000 VND/tháng");
+        assertThat(embeddingModel.calls.get()).isEqualTo(embedCalls);
+        assertThat(cache.getStats().exactHits()).isEqualTo(1);
+    }
+
+    @Test
+    void semanticHitOnlyAboveThresholdAndWithinTenant() {
+        cache.store(cache.lookup(TENANT, "Giá gói Premium là bao nhiêu?"), "299.000 VND/tháng", 1200);
+
+        assertThat(cache.lookup(TENANT, "Gói Premium giá bao nhiêu?").answer()).isEqualTo("299.000 VND/tháng");
+        assertThat(cache.lookup(TENANT, "Có những mẫu website nào?").isHit()).isFalse();
+        assertThat(cache.lookup("tenant-b", "Gói Premium giá bao nhiêu?").isHit()).isFalse();
+        assertThat(cache.getStats().semanticHits()).isEqualTo(1);
+    }
+
+    @Test
+    void contextReferencesAndCreationRequestsAreNotCacheable() {
+        assertThat(cache.isCacheable("Giá gói Premium là bao nhiêu?")).isTrue();
+        assertThat(cache.isCacheable("Gói đó giá bao nhiêu?")).isFalse();
+        assertThat(cache.isCacheable("Tell me more about it")).isFalse();
+        assertThat(cache.isCacheable("Tạo website bán hàng tên ABC")).isFalse();
+        assertThat(cache.isCacheable("Please create a shop website named XYZ")).isFalse();
+        assertThat(cache.getStats().skipped()).isEqualTo(4);
+    }
+
+    @Test
+    void invalidationClearsEntriesAndDropsAnswersGeneratedBeforeIt() {
+        cache.store(cache.lookup(TENANT, "Giá gói Premium là bao nhiêu?"), "299.000 VND/tháng", 1200);
+        SemanticResponseCache.Lookup inFlight = cache.lookup(TENANT, "Có những mẫu website nào?");
+
+        cache.invalidateAll();
+        // Câu trả lời sinh ra trên catalog cũ, hoàn tất sau khi invalidate
+        cache.store(inFlight, "Restaurant Pro, Shop Basic", 1500);
+
+        assertThat(cache.lookup(TENANT, "Giá gói Premium là bao nhiêu?").isHit()).isFalse();
+        assertThat(cache.lookup(TENANT, "Có những mẫu website nào?").isHit()).isFalse();
+        assertThat(cache.getStats().stores()).isEqualTo(1);
+    }
+
+    private static class StubEmbeddingModel implements EmbeddingModel {
+
+        private final Map<String, float[]> vectors;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        StubEmbeddingModel(Map<String, float[]> vectors) {
+            this.vectors = vectors;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            calls.incrementAndGet();
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vectors.getOrDefault(text, new float[] {0f, 0f, 1f}), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    }
+}
\ No newline at end of file
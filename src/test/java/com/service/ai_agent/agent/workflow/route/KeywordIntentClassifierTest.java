@@ -0,0 +1,35 @@
+package com.service.ai_agent.agent.workflow.route;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Từ khóa chỉ khớp trọn từ trên input đã chuẩn hóa.
+ */
+class KeywordIntentClassifierTest {
+
+    private final KeywordIntentClassifier classifier = new KeywordIntentClassifier();
+
+    @Test
+    void matchesWholeTokensOnly() {
+        assertThat(classify("Website giáo dục cho trường học").intent()).isNull();
+        assertThat(classify("My playlist app").intent()).isNull();
+        assertThat(classify("Giá gói Premium?").intent()).isEqualTo(KeywordIntentClassifier.ORCHESTRATION);
+        assertThat(classify("Please list templates").intent()).isEqualTo(KeywordIntentClassifier.ORCHESTRATION);
+    }
+
+    @Test
+    void matchesMultiWordKeywordsAtInputBoundaries() {
+        KeywordIntentClassifier.Classification classification = classify("Tư vấn giúp tôi, nên chọn gói nào");
+
+        assertThat(classification.intent()).isEqualTo(KeywordIntentClassifier.CONSULTING);
+        // tư vấn + nên chọn + gói nào
+        assertThat(classification.score()).isEqualTo(5.5);
+        assertThat(classification.confidence()).isEqualTo(1.0);
+    }
+
+    private KeywordIntentClassifier.Classification classify(String input) {
+        return classifier.classify(KeywordIntentClassifier.normalize(input));
+    }
+}
\ No newline at end of file
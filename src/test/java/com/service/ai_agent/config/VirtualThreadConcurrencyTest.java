@@ -0,0 +1,91 @@
+package com.service.ai_agent.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh số chat đang xử lý đồng thời (in-flight) mà một node giữ được
+ * với platform thread pool và với virtual thread, dùng ChatModel giả lập chậm.
+ */
+class VirtualThreadConcurrencyTest {
+
+    // Mặc định server.tomcat.threads.max của Spring Boot
+    private static final int PLATFORM_POOL_SIZE = 200;
+    private static final int CONCURRENT_CHATS = 2000;
+    private static final long MODEL_LATENCY_MS = 200;
+
+    @Test
+    void virtualThreadsHoldMoreInFlightChatsThanPlatformPool() throws Exception {
+        int platformPeak = peakInFlight(false);
+        int virtualPeak = peakInFlight(true);
+
+        assertThat(platformPeak).isLessThanOrEqualTo(PLATFORM_POOL_SIZE);
+        assertThat(virtualPeak).isGreaterThan(PLATFORM_POOL_SIZE);
+    }
+
+    private int peakInFlight(boolean virtualThreads) throws Exception {
+        SlowChatModel chatModel = new SlowChatModel(MODEL_LATENCY_MS);
+        ChatClient chatClient = ChatClient.builder(chatModel).build();
+
+        AsyncTaskExecutor executor = new ExecutorConfig()
+                .agentTaskExecutor(virtualThreads, PLATFORM_POOL_SIZE, CONCURRENT_CHATS);
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.initialize();
+        }
+
+        CompletableFuture<?>[] chats = new CompletableFuture<?>[CONCURRENT_CHATS];
+        for (int i = 0; i < CONCURRENT_CHATS; i++) {
+            chats[i] = CompletableFuture.supplyAsync(
+                    () -> chatClient.prompt().user("giá gói nâng cao là bao nhiêu").call().content(), executor);
+        }
+        CompletableFuture.allOf(chats).get();
+
+        if (executor instanceof AutoCloseable closeable) {
+            closeable.close();
+        } else if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        }
+        return chatModel.peakInFlight.get();
+    }
+
+    /**
+     * ChatModel giả lập: chặn thread gọi trong một khoảng latency cố định như khi chờ OpenAI.
+     */
+    private static class SlowChatModel implements ChatModel {
+
+        private final long latencyMillis;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+
+        SlowChatModel(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            int current = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("OK"))));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.service.ai_agent.infrastructure.embedding;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Chỉ gửi các chuỗi chưa có trong cache tới model và báo lỗi khi model trả thiếu vector,
+ * với EmbeddingModel giả lập.
+ */
+class CachingEmbeddingModelTest {
+
+    @Test
+    void sendsOnlyMissingTextsToDelegate() {
+        StubEmbeddingModel delegate = new StubEmbeddingModel(0);
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, "text-embedding-3-small", 100, null, 0);
+        model.embed(List.of("xin chào", "giá gói Premium"));
+
+        List<float[]> vectors = model.embed(List.of("giá gói Premium", "mẫu website", "xin chào"));
+
+        assertThat(delegate.requests).containsExactly(List.of("xin chào", "giá gói Premium"), List.of("mẫu website"));
+        assertThat(vectors).extracting(vector -> vector[0]).containsExactly(15f, 11f, 8f);
+    }
+
+    @Test
+    void failsWhenDelegateReturnsFewerEmbeddings() {
+        CachingEmbeddingModel model = new CachingEmbeddingModel(new StubEmbeddingModel(1), "text-embedding-3-small",
+                100, null, 0);
+
+        assertThatThrownBy(() -> model.embed(List.of("xin chào", "giá gói Premium")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("1 embeddings for 2 inputs");
+        assertThat(model.getStats().heapEntries()).isZero();
+    }
+
+    /**
+     * Vector là độ dài chuỗi; có thể bỏ bớt vài embedding cuối như một provider trả thiếu.
+     */
+    private static class StubEmbeddingModel implements EmbeddingModel {
+
+        private final int dropped;
+        private final List<List<String>> requests = new ArrayList<>();
+
+        StubEmbeddingModel(int dropped) {
+            this.dropped = dropped;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requests.add(List.copyOf(request.getInstructions()));
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions().subList(0, request.getInstructions().size() - dropped)) {
+                embeddings.add(new Embedding(new float[] {text.length(), 1f}, embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    }
+}
\ No newline at end of file
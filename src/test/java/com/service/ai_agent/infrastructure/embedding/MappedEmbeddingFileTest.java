@@ -0,0 +1,82 @@
+package com.service.ai_agent.infrastructure.embedding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ghi đè slot cũ nhất khi ring buffer đầy và dựng lại index từ file khi mở lại.
+ */
+class MappedEmbeddingFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void overwritesOldestSlotWhenFull() {
+        try (MappedEmbeddingFile file = new MappedEmbeddingFile(directory.resolve("embeddings.bin"), 3)) {
+            for (int i = 0; i < 4; i++) {
+                file.put(key(i), vector(i));
+            }
+
+            assertThat(file.size()).isEqualTo(3);
+            assertThat(file.get(key(0))).isNull();
+            for (int i = 1; i < 4; i++) {
+                assertThat(file.get(key(i))).containsExactly(vector(i));
+            }
+        }
+    }
+
+    @Test
+    void rebuildsIndexOnReload() {
+        Path path = directory.resolve("embeddings.bin");
+        try (MappedEmbeddingFile file = new MappedEmbeddingFile(path, 3)) {
+            for (int i = 0; i < 5; i++) {
+                file.put(key(i), vector(i));
+            }
+        }
+
+        try (MappedEmbeddingFile reloaded = new MappedEmbeddingFile(path, 3)) {
+            assertThat(reloaded.size()).isEqualTo(3);
+            assertThat(reloaded.get(key(1))).isNull();
+            for (int i = 2; i < 5; i++) {
+                assertThat(reloaded.get(key(i))).containsExactly(vector(i));
+            }
+
+            // Vị trí ghi tiếp theo cũng được khôi phục: key mới thay key cũ nhất (key 2)
+            reloaded.put(key(5), vector(5));
+            assertThat(reloaded.get(key(2))).isNull();
+            assertThat(reloaded.get(key(3))).containsExactly(vector(3));
+            assertThat(reloaded.get(key(5))).containsExactly(vector(5));
+        }
+    }
+
+    @Test
+    void startsEmptyWhenCapacityChanges() {
+        Path path = directory.resolve("embeddings.bin");
+        try (MappedEmbeddingFile file = new MappedEmbeddingFile(path, 3)) {
+            file.put(key(0), vector(0));
+        }
+
+        try (MappedEmbeddingFile reloaded = new MappedEmbeddingFile(path, 5)) {
+            assertThat(reloaded.size()).isZero();
+            assertThat(reloaded.get(key(0))).isNull();
+            reloaded.put(key(0), vector(0));
+            assertThat(reloaded.get(key(0))).containsExactly(vector(0));
+        }
+    }
+
+    private static byte[] key(int value) {
+        byte[] key = new byte[MappedEmbeddingFile.KEY_BYTES];
+        key[0] = (byte) value;
+        key[MappedEmbeddingFile.KEY_BYTES - 1] = (byte) (value * 7);
+        return key;
+    }
+
+    private static float[] vector(int value) {
+        return new float[] {value, value + 0.5f, -value};
+    }
+}
\ No newline at end of file
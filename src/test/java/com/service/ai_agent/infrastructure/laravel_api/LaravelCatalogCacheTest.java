@@ -0,0 +1,182 @@
+package com.service.ai_agent.infrastructure.laravel_api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.ai_agent.infrastructure.laravel_api.dto.PricingPlanDTO;
+import com.service.ai_agent.infrastructure.laravel_api.dto.TemplateDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Refresh-ahead, revalidate bằng ETag (304), serve-stale-on-error với backoff và khôi phục snapshot từ đĩa,
+ * với LaravelApiClient giả lập trả lần lượt các response đã xếp sẵn. Làm mới nền chạy đồng bộ trên thread gọi.
+ */
+class LaravelCatalogCacheTest {
+
+    private static final Duration LONG = Duration.ofMinutes(10);
+
+    @TempDir
+    Path snapshotDir;
+
+    private final StubLaravelApiClient client = new StubLaravelApiClient();
+    private final List<Object> events = new ArrayList<>();
+
+    @Test
+    void servesFromCacheUntilExpired() {
+        client.respond(() -> templates("v1", "Restaurant Pro"));
+        LaravelCatalogCache cache = cache(LONG, Duration.ZERO, LONG, "");
+
+        assertThat(cache.getTemplates()).extracting(TemplateDTO::getName).containsExactly("Restaurant Pro");
+        assertThat(cache.getTemplates()).extracting(TemplateDTO::getName).containsExactly("Restaurant Pro");
+        assertThat(client.etags).hasSize(1);
+    }
+
+    @Test
+    void refreshAheadRevalidatesWithEtagOnlyWhenUsed() {
+        client.respond(() -> templates("v1", "Restaurant Pro"));
+        client.respond(() -> ConditionalResponse.notModified("v1"));
+        // refresh-ahead dài hơn ttl: entry luôn nằm trong cửa sổ làm mới sớm
+        LaravelCatalogCache cache = cache(LONG, LONG.plusMinutes(1), LONG, "");
+        cache.getTemplates();
+        // Được đọc sau lần lấy đầu tiên
+        cache.getTemplates();
+
+        cache.refreshAhead();
+        // Không ai đọc từ lần làm mới trước: không gọi Laravel
+        cache.refreshAhead();
+
+        assertThat(client.etags).containsExactly(null, "v1");
+        assertThat(cache.getTemplates()).extracting(TemplateDTO::getName).containsExactly("Restaurant Pro");
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void publishesChangeWhenRefreshReturnsNewContent() {
+        client.respond(() -> templates("v1", "Restaurant Pro"));
+        client.respond(() -> templates("v2", "Restaurant Pro", "Shop Basic"));
+        LaravelCatalogCache cache = cache(Duration.ZERO, Duration.ZERO, LONG, "");
+        cache.getTemplates();
+
+        assertThat(cache.getTemplates()).extracting(TemplateDTO::getName).containsExactly("Restaurant Pro", "Shop Basic");
+        assertThat(events).containsExactly(new CatalogChangedEvent(LaravelCatalogCache.TEMPLATES));
+    }
+
+    @Test
+    void servesStaleDataAndBacksOffAfterError() {
+        client.respond(() -> templates("v1", "Restaurant Pro"));
+        client.respond(() -> {
+            throw new IllegalStateException("Laravel API unavailable");
+        });
+        // ttl 0: mọi lần đọc đều cần làm mới
+        LaravelCatalogCache cache = cache(Duration.ZERO, Duration.ZERO, LONG, "");
+        cache.getTemplates();
+
+        assertThat(cache.getTemplates()).extracting(TemplateDTO::getName).containsExactly("Restaurant Pro");
+        assertThat(cache.getTemplates()).extracting(TemplateDTO::getName).containsExactly("Restaurant Pro");
+        // Lần đọc thứ ba nằm trong backoff: không gọi lại Laravel
+        assertThat(client.etags).hasSize(2);
+    }
+
+    @Test
+    void backsOffWhenFirstFetchFailsWithoutSnapshot() {
+        client.respond(() -> {
+            throw new IllegalStateException("Laravel API unavailable");
+        });
+        LaravelCatalogCache cache = cache(LONG, Duration.ZERO, LONG, "");
+
+        assertThat(cache.getTemplates()).isEmpty();
+        assertThat(cache.getTemplates()).isEmpty();
+        assertThat(client.etags).hasSize(1);
+    }
+
+    @Test
+    void restoresSnapshotWrittenByPreviousInstance() {
+        client.respond(() -> templates("v1", "Restaurant Pro"));
+        cache(LONG, Duration.ZERO, LONG, snapshotDir.toString()).getTemplates();
+
+        // Node mới khởi động khi Laravel đang lỗi
+        StubLaravelApiClient failing = new StubLaravelApiClient();
+        LaravelCatalogCache restarted = new LaravelCatalogCache(failing, objectMapper(), events::add,
+                new TaskExecutorAdapter(Runnable::run), LONG, Duration.ZERO, LONG, snapshotDir.toString());
+        restarted.loadSnapshots();
+
+        assertThat(restarted.getTemplates()).extracting(TemplateDTO::getName).containsExactly("Restaurant Pro");
+        assertThat(failing.etags).isEmpty();
+    }
+
+    @Test
+    void invalidatePublishesChangeAndRefetches() {
+        client.respond(() -> templates("v1", "Restaurant Pro"));
+        client.respond(() -> ConditionalResponse.notModified("v1"));
+        LaravelCatalogCache cache = cache(LONG, Duration.ZERO, LONG, "");
+        cache.getTemplates();
+
+        assertThat(cache.invalidate(LaravelCatalogCache.TEMPLATES)).isTrue();
+        assertThat(cache.invalidate("websites")).isFalse();
+
+        assertThat(events).containsExactly(new CatalogChangedEvent(LaravelCatalogCache.TEMPLATES));
+        assertThat(client.etags).containsExactly(null, "v1");
+    }
+
+    private LaravelCatalogCache cache(Duration ttl, Duration refreshAhead, Duration errorBackoff, String snapshotDir) {
+        return new LaravelCatalogCache(client, objectMapper(), events::add, new TaskExecutorAdapter(Runnable::run),
+                ttl, refreshAhead, errorBackoff, snapshotDir);
+    }
+
+    private static ObjectMapper objectMapper() {
+        return new ObjectMapper().findAndRegisterModules();
+    }
+
+    private static ConditionalResponse<List<TemplateDTO>> templates(String etag, String... names) {
+        List<TemplateDTO> templates = new ArrayList<>();
+        for (String name : names) {
+            TemplateDTO template = new TemplateDTO();
+            template.setId(name.toLowerCase().replace(' ', '-'));
+            template.setName(name);
+            templates.add(template);
+        }
+        return new ConditionalResponse<>(templates, etag, false);
+    }
+
+    /**
+     * Trả lần lượt các response đã xếp sẵn cho fetchTemplates, ghi lại ETag của từng lần gọi.
+     */
+    private static class StubLaravelApiClient extends LaravelApiClient {
+
+        private final Queue<Supplier<ConditionalResponse<List<TemplateDTO>>>> responses = new ArrayDeque<>();
+        private final List<String> etags = new ArrayList<>();
+
+        StubLaravelApiClient() {
+            super(null, "http://laravel.test/api");
+        }
+
+        void respond(Supplier<ConditionalResponse<List<TemplateDTO>>> response) {
+            responses.add(response);
+        }
+
+        @Override
+        public ConditionalResponse<List<TemplateDTO>> fetchTemplates(String etag) {
+            etags.add(etag);
+            Supplier<ConditionalResponse<List<TemplateDTO>>> response = responses.poll();
+            if (response == null) {
+                throw new IllegalStateException("Laravel API unavailable");
+            }
+            return response.get();
+        }
+
+        @Override
+        public ConditionalResponse<List<PricingPlanDTO>> fetchPricingPlans(String etag) {
+            throw new IllegalStateException("Laravel API unavailable");
+        }
+    }
+}
\ No newline at end of file